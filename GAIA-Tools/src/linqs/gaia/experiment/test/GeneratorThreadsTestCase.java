@@ -0,0 +1,186 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.experiment.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+import linqs.gaia.graph.DirectedEdge;
+import linqs.gaia.feature.values.NumValue;
+import linqs.gaia.graph.Graph;
+import linqs.gaia.graph.GraphItem;
+import linqs.gaia.graph.generator.ForestFire;
+import linqs.gaia.graph.generator.MicroEvolution;
+import linqs.gaia.graph.generator.RMat;
+import linqs.gaia.graph.generator.decorator.BinomialAttributes;
+import linqs.gaia.graph.generator.decorator.RattiganTR07Labeler;
+
+/**
+ * Test that the generators and decorators which run in parallel generate
+ * the same graph using one thread and several threads
+ */
+public class GeneratorThreadsTestCase extends TestCase {
+	public GeneratorThreadsTestCase() {
+		
+	}
+	
+	protected void setUp() {
+		
+	}
+
+	protected void tearDown() {
+		
+	}
+	
+	public void testForestFireEpochs() {
+		Graph one = this.generateForestFire(1);
+		Graph four = this.generateForestFire(4);
+		
+		assertEquals(one.numNodes(), four.numNodes());
+		List<String> edges = getEdges(one, "ffedge");
+		assertFalse(edges.isEmpty());
+		assertEquals(edges, getEdges(four, "ffedge"));
+	}
+	
+	private Graph generateForestFire(int numthreads) {
+		ForestFire ff = new ForestFire();
+		ff.setParameter("numnodes", "2000");
+		ff.setParameter("epochsize", "50");
+		ff.setParameter("seed", "3");
+		ff.setParameter("numthreads", ""+numthreads);
+		
+		return ff.generateGraph();
+	}
+	
+	public void testMicroEvolution() {
+		Graph one = this.generateMicroEvolution(1);
+		Graph four = this.generateMicroEvolution(4);
+		
+		assertEquals(one.numNodes(), four.numNodes());
+		List<String> edges = getEdges(one, "meedge");
+		assertFalse(edges.isEmpty());
+		assertEquals(edges, getEdges(four, "meedge"));
+	}
+	
+	private Graph generateMicroEvolution(int numthreads) {
+		MicroEvolution me = new MicroEvolution();
+		me.setParameter("nodesPerDay", "20");
+		me.setParameter("lastEvolDay", "60");
+		me.setParameter("sleeptime", "table");
+		me.setParameter("seed", "3");
+		me.setParameter("numthreads", ""+numthreads);
+		
+		return me.generateGraph();
+	}
+	
+	public void testRMat() {
+		// Several blocks of edges, so that each thread generates some of them
+		List<String> edges = getEdges(this.generateRMat(1, "no"), "rmatedge");
+		assertFalse(edges.isEmpty());
+		assertEquals(edges, getEdges(this.generateRMat(4, "no"), "rmatedge"));
+	}
+	
+	public void testRMatDuplicateLinks() {
+		// Edges are generated in rounds, and added without being sorted
+		List<String> edges = getEdges(this.generateRMat(1, "yes"), "rmatedge");
+		assertFalse(edges.isEmpty());
+		assertEquals(edges, getEdges(this.generateRMat(4, "yes"), "rmatedge"));
+	}
+	
+	private Graph generateRMat(int numthreads, String duplinks) {
+		RMat rmat = new RMat();
+		rmat.setParameter("scale", "12");
+		rmat.setParameter("numedges", "300000");
+		rmat.setParameter("duplinks", duplinks);
+		rmat.setParameter("seed", "3");
+		rmat.setParameter("numthreads", ""+numthreads);
+		
+		return rmat.generateGraph();
+	}
+	
+	public void testBinomialAttributes() {
+		ForestFire ff = new ForestFire();
+		ff.setParameter("numnodes", "500");
+		ff.setParameter("seed", "3");
+		Graph g = ff.generateGraph();
+		
+		RattiganTR07Labeler labeler = new RattiganTR07Labeler();
+		labeler.setParameter("nodeschemaid", "ffnode");
+		labeler.setParameter("targetfeatureid", "label");
+		labeler.setParameter("numlabels", "2");
+		labeler.setParameter("numrandomperlabel", "10");
+		labeler.decorate(g);
+		
+		// Set the attributes of the same nodes using one and four threads,
+		// with a different prefix for each
+		int vocabsize = 20;
+		this.decorateBinomial(g, vocabsize, "one", 1);
+		this.decorateBinomial(g, vocabsize, "four", 4);
+		
+		Iterator<GraphItem> nitr = g.getGraphItems("ffnode");
+		while(nitr.hasNext()) {
+			GraphItem gi = nitr.next();
+			for(int i=0; i<vocabsize; i++) {
+				double one = ((NumValue) gi.getFeatureValue("one"+i)).getNumber();
+				double four = ((NumValue) gi.getFeatureValue("four"+i)).getNumber();
+				assertEquals("Word "+i+" of "+gi, one, four, 0);
+			}
+		}
+	}
+	
+	private void decorateBinomial(Graph g, int vocabsize, String attrprefix, int numthreads) {
+		BinomialAttributes bin = new BinomialAttributes();
+		bin.setParameter("schemaid", "ffnode");
+		bin.setParameter("targetfeatureid", "label");
+		bin.setParameter("vocabsize", ""+vocabsize);
+		bin.setParameter("numobs", "15");
+		bin.setParameter("attrprefix", attrprefix);
+		bin.setParameter("seed", "3");
+		bin.setParameter("numthreads", ""+numthreads);
+		bin.decorate(g);
+	}
+	
+	/**
+	 * Get the directed edges of a graph, as source and target object ids, in sorted order
+	 * 
+	 * @param g Graph
+	 * @param edgeschemaid Schema ID of the edges
+	 * @return Sorted list of edges, including duplicate edges
+	 */
+	private static List<String> getEdges(Graph g, String edgeschemaid) {
+		List<String> edges = new ArrayList<String>();
+		Iterator<GraphItem> eitr = g.getGraphItems(edgeschemaid);
+		while(eitr.hasNext()) {
+			DirectedEdge e = (DirectedEdge) eitr.next();
+			edges.add(e.getSourceNodes().next().getID().getObjID()
+					+"->"+e.getTargetNodes().next().getID().getObjID());
+		}
+		
+		Collections.sort(edges);
+		
+		return edges;
+	}
+	
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(GeneratorThreadsTestCase.class);
+	}
+}
@@ -20,6 +20,8 @@ package linqs.gaia.experiment.test;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import linqs.gaia.graph.generator.test.GraphStatisticsTestCase;
+import linqs.gaia.graph.generator.test.SleepTimeSamplerTestCase;
 
 public class ToolsExperimentTestSuite {
 
@@ -28,6 +30,11 @@ public class ToolsExperimentTestSuite {
 
 		// Test each experiment class
 		suite.addTestSuite(GraphGeneratorExperimentTestCase.class);
+		suite.addTestSuite(GeneratorThreadsTestCase.class);
+		
+		// Test the generator utilities
+		suite.addTestSuite(SleepTimeSamplerTestCase.class);
+		suite.addTestSuite(GraphStatisticsTestCase.class);
 		
 		return suite;
 	}
@@ -0,0 +1,121 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import linqs.gaia.exception.InvalidStateException;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * Alias table (Walker, with Vose's construction) for drawing an index
+ * with probability proportional to its weight in constant time.
+ * Building the table takes time linear in the number of weights.
+ */
+public class AliasTable {
+	private double[] prob;
+	private int[] alias;
+	
+	/**
+	 * Build an alias table for the given weights
+	 * 
+	 * @param weights Non-negative weights, at least one of which is positive
+	 */
+	public AliasTable(double[] weights) {
+		int n = weights.length;
+		double total = 0;
+		for(int i=0; i<n; i++) {
+			if(weights[i] < 0 || Double.isNaN(weights[i]) || Double.isInfinite(weights[i])) {
+				throw new InvalidStateException("Invalid weight at "+i+": "+weights[i]);
+			}
+			
+			total += weights[i];
+		}
+		
+		if(total <= 0) {
+			throw new InvalidStateException("Weights must sum to a positive value: "+total);
+		}
+		
+		prob = new double[n];
+		alias = new int[n];
+		
+		// Scale weights so that their mean is 1 and split them into
+		// those below and those at or above the mean
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int numsmall = 0;
+		int[] large = new int[n];
+		int numlarge = 0;
+		for(int i=0; i<n; i++) {
+			scaled[i] = weights[i]*n/total;
+			if(scaled[i] < 1) {
+				small[numsmall++] = i;
+			} else {
+				large[numlarge++] = i;
+			}
+		}
+		
+		while(numsmall != 0 && numlarge != 0) {
+			int s = small[--numsmall];
+			int l = large[--numlarge];
+			prob[s] = scaled[s];
+			alias[s] = l;
+			
+			scaled[l] = (scaled[l] + scaled[s]) - 1;
+			if(scaled[l] < 1) {
+				small[numsmall++] = l;
+			} else {
+				large[numlarge++] = l;
+			}
+		}
+		
+		// Remaining entries are at the mean, up to rounding
+		while(numlarge != 0) {
+			int l = large[--numlarge];
+			prob[l] = 1;
+			alias[l] = l;
+		}
+		
+		while(numsmall != 0) {
+			int s = small[--numsmall];
+			prob[s] = 1;
+			alias[s] = s;
+		}
+	}
+	
+	/**
+	 * @return Number of weights in the table
+	 */
+	public int size() {
+		return prob.length;
+	}
+	
+	/**
+	 * Draw an index with probability proportional to its weight
+	 * 
+	 * @param generator Random number generator
+	 * @return Index, from 0 to size()-1
+	 */
+	public int sample(RandomEngine generator) {
+		int i = (int) (generator.raw()*prob.length);
+		if(i == prob.length) {
+			i--;
+		}
+		
+		return generator.raw() < prob[i] ? i : alias[i];
+	}
+}
@@ -0,0 +1,438 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import linqs.gaia.configurable.BaseConfigurable;
+import linqs.gaia.exception.ConfigurationException;
+import linqs.gaia.feature.schema.Schema;
+import linqs.gaia.feature.schema.SchemaType;
+import linqs.gaia.graph.Graph;
+import linqs.gaia.graph.GraphUtils;
+import linqs.gaia.graph.datagraph.DataGraph;
+import linqs.gaia.graph.generator.sink.GeneratorSink;
+import linqs.gaia.identifiable.GraphID;
+import linqs.gaia.log.Log;
+import linqs.gaia.util.Dynamic;
+import linqs.gaia.util.SimpleTimer;
+
+/**
+ * Base class for generators whose edges are generated independently
+ * from a fixed set of nodes (e.g., {@link RMat}, {@link ChungLu}).
+ * Subclasses only set up their model and generate a single edge
+ * in {@link #generateEdge(SplitMixEngine)}.
+ * <p>
+ * The edges are generated in parallel in fixed size blocks, each using its own
+ * random number stream derived from the seed, so the generated graph depends on the seed
+ * but not the number of threads.  Duplicate edges are removed by sorting the edges,
+ * encoded as longs, with a {@link ParallelLongSort}.
+ * <p>
+ * 
+ *  Optional Parameters:
+ *  <UL>
+ *  <LI> graphclass-Full java class for the graph,
+ * instantiated using Dynamic.forConfigurableName.
+ * Defaults is {@link linqs.gaia.graph.datagraph.DataGraph}.
+ *  <LI> isdirected-If yes, create a graph with directed edges.
+ *  If no, create a graph with undirected edges.  The default is set by the subclass.
+ *  <LI> duplinks-If yes, allow duplicate links
+ *  (i.e., two directed edges have the same source to target).  The edges are then
+ *  not sorted and are added in the order they are generated.  Ignored if isdirected is no.
+ *  Default is no.
+ *  <LI> selfloops-If yes, keep edges whose source and target are the same node.
+ *  Default is no.
+ *  <LI> nodeschemaid-Schema id for nodes.  The default is set by the subclass.
+ *  <LI> edgeschemaid-Schema id for edge.  The default is set by the subclass.
+ *  <LI> graphschemaid-Schema id for graph.  The default is set by the subclass.
+ *  <LI> graphobjid-Object id for graph.  Default is g1.
+ *  <LI> seed-Random generator seed.  Default is 0.
+ *  <LI> numthreads-Number of threads to use when generating and sorting edges.
+ *  Default is the number of available processors.
+ *  <LI> sinkclass-If specified, the nodes and edges are written to the {@link GeneratorSink}
+ *  instantiated using Dynamic.forConfigurableName
+ *  (e.g., sink:linqs.gaia.graph.generator.sink.SparseTabDelimSink) instead of being added
+ *  to the graph.  The returned graph only contains the schemas.
+ *  </UL>
+ */
+public abstract class BlockEdgeGenerator extends BaseConfigurable implements Generator {
+	// Number of edges generated with each random number stream
+	private static final int BLOCK_SIZE = 1 << 16;
+	private static final int MAX_SORTED_EDGES = Integer.MAX_VALUE - 8;
+	
+	protected boolean isdirected;
+	protected boolean duplinks = false;
+	protected boolean selfloops = false;
+	protected long seed = 0;
+	protected int numthreads = Runtime.getRuntime().availableProcessors();
+	
+	private long numedges;
+	private GeneratorSink sink = null;
+	private GraphMaterializer materializer = null;
+	private int edgekeyid = 0;
+	
+	private String graphobjid = "g1";
+	private String graphschemaid;
+	private String nodeschemaid;
+	private String edgeschemaid;
+	
+	/**
+	 * @param graphschemaid Default schema id for graph
+	 * @param nodeschemaid Default schema id for nodes
+	 * @param edgeschemaid Default schema id for edges
+	 * @param isdirected Default for whether the edges are directed
+	 */
+	protected BlockEdgeGenerator(String graphschemaid, String nodeschemaid,
+			String edgeschemaid, boolean isdirected) {
+		this.graphschemaid = graphschemaid;
+		this.nodeschemaid = nodeschemaid;
+		this.edgeschemaid = edgeschemaid;
+		this.isdirected = isdirected;
+	}
+	
+	/**
+	 * Read the parameters of the model and set up whatever is needed
+	 * to generate edges.  Called after the common parameters are read.
+	 * 
+	 * @return Number of nodes
+	 */
+	protected abstract int initializeModel();
+	
+	/**
+	 * Number of edges to generate, including the duplicate edges
+	 * and self loops which may be removed.  Called after {@link #initializeModel()}.
+	 * 
+	 * @return Number of edges
+	 */
+	protected abstract long getNumEdges();
+	
+	/**
+	 * Generate a single edge.  This is called concurrently by the worker threads,
+	 * so it must only read the state set up by {@link #initializeModel()}.
+	 * 
+	 * @param rand Random number generator
+	 * @return Edge encoded by {@link #encodeEdge(int, int)}
+	 */
+	protected abstract long generateEdge(SplitMixEngine rand);
+	
+	/**
+	 * Release the state set up by {@link #initializeModel()}
+	 * once the graph is generated.  Does nothing by default.
+	 */
+	protected void releaseModel() {
+	
+	}
+	
+	public Graph generateGraph() {
+		return this.generateGraph(null);
+	}
+	
+	public Graph generateGraph(String objid) {
+		// Get parameters
+		if(this.hasParameter("nodeschemaid")) {
+			this.nodeschemaid = this.getStringParameter("nodeschemaid");
+		}
+		
+		if(this.hasParameter("edgeschemaid")) {
+			this.edgeschemaid = this.getStringParameter("edgeschemaid");
+		}
+		
+		if(this.hasParameter("graphschemaid")) {
+			this.graphschemaid = this.getStringParameter("graphschemaid");
+		}
+		
+		if(objid!=null) {
+			this.graphobjid=objid;
+		} else if(this.hasParameter("graphobjid")) {
+			this.graphobjid = this.getStringParameter("graphobjid");
+		}
+		
+		if(this.hasParameter("isdirected", "yes")) {
+			isdirected = true;
+		} else if(this.hasParameter("isdirected", "no")) {
+			isdirected = false;
+		} else if(this.hasParameter("isdirected")) {
+			throw new ConfigurationException("Invalid isdirected option: "
+					+this.getStringParameter("isdirected"));
+		}
+		
+		if(this.hasParameter("duplinks", "yes")) {
+			this.duplinks = true;
+		} else if(this.hasParameter("duplinks", "no")) {
+			this.duplinks = false;
+		} else if(this.hasParameter("duplinks")) {
+			throw new ConfigurationException("Invalid duplinks option: "
+					+this.getStringParameter("duplinks"));
+		}
+		
+		if(this.hasParameter("selfloops", "yes")) {
+			this.selfloops = true;
+		} else if(this.hasParameter("selfloops", "no")) {
+			this.selfloops = false;
+		} else if(this.hasParameter("selfloops")) {
+			throw new ConfigurationException("Invalid selfloops option: "
+					+this.getStringParameter("selfloops"));
+		}
+		
+		if(this.hasParameter("seed")) {
+			seed = (long) this.getDoubleParameter("seed");
+		}
+		
+		if(this.hasParameter("numthreads")) {
+			this.numthreads = (int) this.getDoubleParameter("numthreads");
+			if(this.numthreads < 1) {
+				throw new ConfigurationException("Invalid numthreads: "+this.numthreads);
+			}
+		}
+		
+		SimpleTimer gengraphtimer = new SimpleTimer();
+		
+		int numnodes = this.initializeModel();
+		numedges = this.getNumEdges();
+		if(numedges < 0) {
+			throw new ConfigurationException("Invalid number of edges: "+numedges);
+		}
+		
+		boolean sortedges = !this.duplinks || !this.isdirected;
+		if(sortedges && numedges > MAX_SORTED_EDGES) {
+			throw new ConfigurationException("Too many edges to remove duplicates: "+numedges
+					+".  Use duplinks=yes with isdirected=yes, or generate fewer edges.");
+		}
+		
+		if(this.hasParameter("sinkclass")) {
+			this.sink = (GeneratorSink) Dynamic.forConfigurableName(GeneratorSink.class,
+					this.getStringParameter("sinkclass"), this);
+		}
+		
+		// Create graph
+		GraphID gid = new GraphID(graphschemaid,this.graphobjid);
+		String graphclass = DataGraph.class.getCanonicalName();
+		if(this.hasParameter("graphclass")){
+			graphclass = this.getStringParameter("graphclass");
+		}
+		
+		Class<?>[] argsClass = new Class[]{GraphID.class};
+		Object[] argValues = new Object[]{gid};
+		Graph graph = (Graph) Dynamic.forName(Graph.class,
+				graphclass,
+				argsClass,
+				argValues);
+		
+		graph.copyParameters(this);
+		
+		// Create node schema
+		graph.addSchema(nodeschemaid, new Schema(SchemaType.NODE));
+		
+		// Create edge schema
+		graph.addSchema(edgeschemaid, new Schema(this.isdirected ?
+				SchemaType.DIRECTED : SchemaType.UNDIRECTED));
+		
+		edgekeyid = 0;
+		if(this.sink != null) {
+			this.sink.open(graphschemaid, graphobjid, nodeschemaid, edgeschemaid, this.isdirected);
+			for(int i=0; i<numnodes; i++) {
+				this.sink.addNode(i);
+			}
+		} else {
+			// Sorted edges are unique, so the materializer need not check for duplicates
+			materializer = new GraphMaterializer(graph, nodeschemaid, edgeschemaid,
+					this.isdirected, 0, 0, numnodes, (int) Math.min(numedges, MAX_SORTED_EDGES),
+					sortedges);
+			materializer.addNodes(numnodes);
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(this.numthreads);
+		try {
+			if(sortedges) {
+				this.generateUniqueEdges(executor);
+			} else {
+				this.generateEdgesInRounds(executor);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		if(this.sink != null) {
+			this.sink.close();
+			this.sink = null;
+		}
+		
+		materializer = null;
+		this.releaseModel();
+		
+		Log.INFO("Nodes: "+numnodes+" Generated edges: "+numedges+" Edges kept: "+edgekeyid
+				+" Time to generate graph: "+gengraphtimer.timeLapse(true));
+		Log.INFO(GraphUtils.getSimpleGraphOverview(graph));
+		
+		return graph;
+	}
+	
+	/**
+	 * Encode an edge as a long, with the source in the high 32 bits
+	 * and the target in the low 32 bits.  For undirected graphs,
+	 * the source is the smaller of the two nodes.
+	 * 
+	 * @param source Source node index
+	 * @param target Target node index
+	 * @return Encoded edge
+	 */
+	protected final long encodeEdge(int source, int target) {
+		if(!this.isdirected && source > target) {
+			int tmp = source;
+			source = target;
+			target = tmp;
+		}
+		
+		return ((long) source << 32) | target;
+	}
+	
+	/**
+	 * Generate all the edges, sort them and add each unique edge once,
+	 * in increasing order of source and target
+	 * 
+	 * @param executor Executor to generate and sort the edges with
+	 */
+	private void generateUniqueEdges(ExecutorService executor) {
+		long[] edges = new long[(int) numedges];
+		this.generateBlocks(executor, edges, 0, numBlocks(numedges));
+		int numunique = ParallelLongSort.sortUnique(edges, edges.length, executor, this.numthreads);
+		for(int i=0; i<numunique; i++) {
+			this.addEdge(edges[i]);
+		}
+	}
+	
+	/**
+	 * Generate the edges in rounds of a few blocks per thread,
+	 * adding the edges of each round, including duplicates,
+	 * in the order they were generated
+	 * 
+	 * @param executor Executor to generate the edges with
+	 */
+	private void generateEdgesInRounds(ExecutorService executor) {
+		long numblocks = numBlocks(numedges);
+		int roundblocks = 2*this.numthreads;
+		long[] edges = new long[(int) Math.min(numedges, (long) roundblocks*BLOCK_SIZE)];
+		for(long firstblock=0; firstblock<numblocks; firstblock+=roundblocks) {
+			long lastblock = Math.min(firstblock+roundblocks, numblocks);
+			this.generateBlocks(executor, edges, firstblock, lastblock);
+			
+			long numroundedges = Math.min(numedges, lastblock*BLOCK_SIZE) - firstblock*BLOCK_SIZE;
+			for(int i=0; i<numroundedges; i++) {
+				this.addEdge(edges[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Generate the edges of the given blocks in parallel.  The edges of the first block
+	 * are stored at the start of the array, followed by those of the next blocks.
+	 * 
+	 * @param executor Executor to generate the edges with
+	 * @param edges Array to store the edges in
+	 * @param firstblock Index of the first block to generate
+	 * @param lastblock Index after the last block to generate
+	 */
+	private void generateBlocks(ExecutorService executor, long[] edges, long firstblock, long lastblock) {
+		long numblocks = lastblock-firstblock;
+		int numworkers = (int) Math.min(this.numthreads, numblocks);
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(numworkers);
+		for(int w=0; w<numworkers; w++) {
+			futures.add(executor.submit(new BlockWorker(edges, firstblock,
+					firstblock+numblocks*w/numworkers, firstblock+numblocks*(w+1)/numworkers)));
+		}
+		
+		try {
+			for(Future<Object> f:futures) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Add an edge, encoded as a long, to the sink or graph,
+	 * unless it is a self loop and self loops are not kept
+	 * 
+	 * @param edge Edge encoded by {@link #encodeEdge(int, int)}
+	 */
+	private void addEdge(long edge) {
+		int source = (int) (edge >>> 32);
+		int target = (int) edge;
+		if(!this.selfloops && source == target) {
+			return;
+		}
+		
+		if(this.sink != null) {
+			this.sink.addEdge(edgekeyid++, source, target);
+		} else if(materializer.addEdge(source, target)) {
+			edgekeyid++;
+		}
+	}
+	
+	private static long numBlocks(long numedges) {
+		return (numedges + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+	
+	/**
+	 * Worker which generates the edges of a range of blocks,
+	 * reseeding its random number generator for each block
+	 */
+	private class BlockWorker implements Callable<Object> {
+		private long[] edges;
+		private long arrayblock;
+		private long firstblock;
+		private long lastblock;
+		private SplitMixEngine rand = new SplitMixEngine(0);
+		
+		/**
+		 * @param edges Array to store the edges in
+		 * @param arrayblock Index of the block stored at the start of the array
+		 * @param firstblock Index of the first block to generate
+		 * @param lastblock Index after the last block to generate
+		 */
+		public BlockWorker(long[] edges, long arrayblock, long firstblock, long lastblock) {
+			this.edges = edges;
+			this.arrayblock = arrayblock;
+			this.firstblock = firstblock;
+			this.lastblock = lastblock;
+		}
+		
+		public Object call() {
+			for(long block=firstblock; block<lastblock; block++) {
+				rand.setSeed(SeedUtils.deriveSeed(seed, block));
+				int offset = (int) ((block-arrayblock)*BLOCK_SIZE);
+				long blockedges = Math.min(BLOCK_SIZE, numedges-block*BLOCK_SIZE);
+				for(int i=0; i<blockedges; i++) {
+					edges[offset+i] = generateEdge(rand);
+				}
+			}
+			
+			return null;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import linqs.gaia.exception.ConfigurationException;
+import linqs.gaia.graph.Graph;
+import linqs.gaia.graph.Node;
+import linqs.gaia.graph.io.IO;
+import linqs.gaia.util.Dynamic;
+
+/**
+ * Chung-Lu generation model based on:
+ * <p>
+ * Chung, F. and Lu, L. 2002.
+ * Connected components in random graphs with given expected degree sequences.
+ * Annals of Combinatorics 6, 2, 125-145.
+ * <p>
+ * The degree histogram of an input graph, or one read from a file, is scaled up
+ * by multiplying the number of nodes of each degree by scalefactor.  Each node is
+ * then given its degree as its weight, and half the total weight edges are generated,
+ * picking each of their two nodes with probability proportional to its weight,
+ * so that the expected degree of each node is its weight.  A node is picked in constant time
+ * by picking a degree using an {@link AliasTable} and then a node of that degree uniformly,
+ * so generation takes time linear in the number of edges.  The nodes of each degree have
+ * consecutive indices, in increasing order of degree.
+ * <p>
+ * The edges are generated in parallel as described in {@link BlockEdgeGenerator},
+ * so the generated graph depends on the seed but not the number of threads.
+ * Removing duplicate edges lowers the degree of the highest degree nodes.
+ * <p>
+ * Required Parameters:
+ * <UL>
+ * <LI> ioclass-{@link IO} used to load the input graph, instantiated
+ * using Dynamic.forConfigurableName (e.g., io:linqs.gaia.graph.io.SparseTabDelimIO).
+ * The degree of a node is its number of edges.  Required unless degreefile is specified.
+ * <LI> degreefile-File containing the degree histogram, with a degree and the number of nodes
+ * with that degree, separated by a tab, on each line.  Empty lines and lines starting with
+ * # are ignored.  Required unless ioclass is specified.
+ * </UL>
+ * <p>
+ * Optional Parameters:
+ * <UL>
+ * <LI> inputnodeschemaid-If specified, only nodes with this schema id in the input graph
+ * are used for the degree histogram.  Default is to use all nodes.
+ * <LI> scalefactor-Number the number of nodes of each degree is multiplied by,
+ * rounded to the nearest integer.  Default is 1.
+ * <LI> graphclass-Full java class for the graph,
+ * instantiated using Dynamic.forConfigurableName.
+ * Defaults is {@link linqs.gaia.graph.datagraph.DataGraph}.
+ * <LI> isdirected-If yes, each generated edge is directed from the first node picked
+ * to the second, so the expected total degree of each node is its weight.
+ * Default is no.
+ * <LI> duplinks-If yes, allow duplicate links
+ * (i.e., two directed edges have the same source to target).  The edges are then
+ * not sorted and are added in the order they are generated.  Ignored if isdirected is no.
+ * Default is no.
+ * <LI> selfloops-If yes, keep edges whose source and target are the same node.
+ * Default is no.
+ * <LI> nodeschemaid-Schema id for nodes.  Default is clnode.
+ * <LI> edgeschemaid-Schema id for edge.  Default is cledge.
+ * <LI> graphschemaid-Schema id for graph.  Default is clgraph.
+ * <LI> graphobjid-Object id for graph.  Default is g1.
+ * <LI> seed-Random generator seed.  Default is 0.
+ * <LI> numthreads-Number of threads to use when generating and sorting edges.
+ * Default is the number of available processors.
+ * <LI> sinkclass-If specified, the nodes and edges are written to the {@link linqs.gaia.graph.generator.sink.GeneratorSink}
+ * instantiated using Dynamic.forConfigurableName
+ * (e.g., sink:linqs.gaia.graph.generator.sink.SparseTabDelimSink) instead of being added
+ * to the graph.  The returned graph only contains the schemas.
+ * </UL>
+ */
+public class ChungLu extends BlockEdgeGenerator {
+	private double scalefactor = 1;
+	
+	// Degree, first node index and number of nodes of each degree with nodes
+	private int[] degrees;
+	private int[] firstnodes;
+	private int[] numdegreenodes;
+	private AliasTable degreetable;
+	private long numedges;
+	
+	public ChungLu() {
+		super("clgraph", "clnode", "cledge", false);
+	}
+	
+	protected int initializeModel() {
+		if(this.hasParameter("scalefactor")) {
+			scalefactor = this.getDoubleParameter("scalefactor");
+			if(scalefactor <= 0) {
+				throw new ConfigurationException("Invalid scalefactor: "+scalefactor);
+			}
+		}
+		
+		// Get the degree histogram
+		TreeMap<Integer,Long> histogram;
+		if(this.hasParameter("degreefile")) {
+			histogram = this.readDegreeHistogram(this.getStringParameter("degreefile"));
+		} else if(this.hasParameter("ioclass")) {
+			IO io = (IO) Dynamic.forConfigurableName(IO.class,
+					this.getStringParameter("ioclass"), this);
+			histogram = this.getDegreeHistogram(io.loadGraph());
+		} else {
+			throw new ConfigurationException("Either ioclass or degreefile must be specified");
+		}
+		
+		return this.scaleDegreeHistogram(histogram);
+	}
+	
+	protected long getNumEdges() {
+		return numedges;
+	}
+	
+	protected void releaseModel() {
+		degreetable = null;
+	}
+	
+	/**
+	 * Read a degree histogram from a file
+	 * 
+	 * @param file File with a degree and number of nodes, separated by a tab, on each line
+	 * @return Map from degree to number of nodes with that degree
+	 */
+	private TreeMap<Integer,Long> readDegreeHistogram(String file) {
+		TreeMap<Integer,Long> histogram = new TreeMap<Integer,Long>();
+		try {
+			BufferedReader reader = new BufferedReader(new FileReader(file));
+			try {
+				String line;
+				while((line = reader.readLine()) != null) {
+					line = line.trim();
+					if(line.length()==0 || line.startsWith("#")) {
+						continue;
+					}
+					
+					String[] parts = line.split("\t");
+					if(parts.length != 2) {
+						throw new ConfigurationException("Invalid degree histogram line: "+line);
+					}
+					
+					int degree;
+					long count;
+					try {
+						degree = Integer.parseInt(parts[0].trim());
+						count = Long.parseLong(parts[1].trim());
+					} catch (NumberFormatException e) {
+						throw new ConfigurationException("Invalid degree histogram line: "+line);
+					}
+					
+					if(degree < 0 || count < 0) {
+						throw new ConfigurationException("Invalid degree histogram line: "+line);
+					}
+					
+					Long prev = histogram.get(degree);
+					histogram.put(degree, prev==null ? count : prev+count);
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		return histogram;
+	}
+	
+	/**
+	 * Get the degree histogram of a graph
+	 * 
+	 * @param graph Graph
+	 * @return Map from degree to number of nodes with that degree
+	 */
+	private TreeMap<Integer,Long> getDegreeHistogram(Graph graph) {
+		TreeMap<Integer,Long> histogram = new TreeMap<Integer,Long>();
+		Iterator<Node> nitr = this.hasParameter("inputnodeschemaid") ?
+				graph.getNodes(this.getStringParameter("inputnodeschemaid")) : graph.getNodes();
+		while(nitr.hasNext()) {
+			int degree = nitr.next().numEdges();
+			Long prev = histogram.get(degree);
+			histogram.put(degree, prev==null ? 1L : prev+1);
+		}
+		
+		return histogram;
+	}
+	
+	/**
+	 * Scale the degree histogram and set the node indices, alias table
+	 * and number of edges used to generate the edges
+	 * 
+	 * @param histogram Map from degree to number of nodes with that degree
+	 * @return Number of nodes
+	 */
+	private int scaleDegreeHistogram(TreeMap<Integer,Long> histogram) {
+		List<Integer> degreelist = new ArrayList<Integer>();
+		List<Long> countlist = new ArrayList<Long>();
+		long numnodes = 0;
+		long totalweight = 0;
+		for(Map.Entry<Integer,Long> entry:histogram.entrySet()) {
+			long count = Math.round(entry.getValue()*scalefactor);
+			if(count == 0) {
+				continue;
+			}
+			
+			degreelist.add(entry.getKey());
+			countlist.add(count);
+			numnodes += count;
+			totalweight += count*entry.getKey();
+		}
+		
+		if(numnodes > Integer.MAX_VALUE) {
+			throw new ConfigurationException("Too many nodes: "+numnodes);
+		}
+		
+		if(totalweight == 0) {
+			throw new ConfigurationException("Degree histogram has no edges");
+		}
+		
+		int numdegrees = degreelist.size();
+		degrees = new int[numdegrees];
+		firstnodes = new int[numdegrees];
+		numdegreenodes = new int[numdegrees];
+		double[] weights = new double[numdegrees];
+		int firstnode = 0;
+		for(int i=0; i<numdegrees; i++) {
+			degrees[i] = degreelist.get(i);
+			numdegreenodes[i] = countlist.get(i).intValue();
+			firstnodes[i] = firstnode;
+			firstnode += numdegreenodes[i];
+			weights[i] = (double) degrees[i]*numdegreenodes[i];
+		}
+		
+		degreetable = new AliasTable(weights);
+		numedges = totalweight/2;
+		
+		return (int) numnodes;
+	}
+	
+	/**
+	 * Pick a node with probability proportional to its degree
+	 * 
+	 * @param rand Random number generator
+	 * @return Node index
+	 */
+	private int pickNode(SplitMixEngine rand) {
+		int d = degreetable.sample(rand);
+		int offset = (int) (rand.nextDouble()*numdegreenodes[d]);
+		
+		return firstnodes[d] + Math.min(offset, numdegreenodes[d]-1);
+	}
+	
+	/**
+	 * Generate an edge between two nodes picked with probability proportional to their degree
+	 * 
+	 * @param rand Random number generator
+	 * @return Encoded edge
+	 */
+	protected long generateEdge(SplitMixEngine rand) {
+		int source = this.pickNode(rand);
+		int target = this.pickNode(rand);
+		
+		return this.encodeEdge(source, target);
+	}
+}
@@ -18,11 +18,32 @@
 */
 package linqs.gaia.graph.generator;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import linqs.gaia.configurable.BaseConfigurable;
 import linqs.gaia.exception.ConfigurationException;
@@ -35,6 +56,9 @@ import linqs.gaia.graph.Graph;
 import linqs.gaia.graph.GraphUtils;
 import linqs.gaia.graph.Node;
 import linqs.gaia.graph.datagraph.DataGraph;
+import linqs.gaia.graph.generator.metrics.GeneratorListener;
+import linqs.gaia.graph.generator.metrics.GeneratorMetrics;
+import linqs.gaia.graph.generator.sink.GeneratorSink;
 import linqs.gaia.identifiable.GraphID;
 import linqs.gaia.identifiable.GraphItemID;
 import linqs.gaia.log.Log;
@@ -42,9 +66,8 @@ import linqs.gaia.util.Dynamic;
 import linqs.gaia.util.IteratorUtils;
 import linqs.gaia.util.ListUtils;
 import linqs.gaia.util.SimpleTimer;
-import umontreal.iro.lecuyer.probdist.GeometricDist;
-import umontreal.iro.lecuyer.randvar.GeometricGen;
 import umontreal.iro.lecuyer.rng.LFSR113;
+import umontreal.iro.lecuyer.rng.RandomStream;
 
 /**
  * Forest fire generation model based on:
@@ -64,8 +87,11 @@ import umontreal.iro.lecuyer.rng.LFSR113;
  * instantiated using Dynamic.forConfigurableName.
  * Defaults is {@link linqs.gaia.graph.datagraph.DataGraph}.
  *  <LI> isdirected-If no, create a graph with undirected edges by creating
- *  a directed edge between all nodes which have a directed edge between them.
+ *  an undirected edge between all nodes which have a directed edge between them.
  *  (i.e., an undirected edge added between a-b if a->b and/or b->a exists).
+ *  With engine=graph, the directed edges are added to the graph and then converted
+ *  to undirected edges.  With engine=primitive, the undirected edges are created directly,
+ *  in the order the first directed edge between their nodes was generated.
  *  By default, create directed.
  *  <LI> numnodes-Number of nodes to generate for the given graph.  Default is 1000.
  *  <LI> pf-Forest re forward burning probability.  Default is .37.
@@ -77,6 +103,80 @@ import umontreal.iro.lecuyer.rng.LFSR113;
  *  <LI> graphschemaid-Schema id for graph.  Default is ffgraph.
  *  <LI> graphobjid-Object id for graph.  Default is g1.
  *  <LI> seed-Random generator seed.  Default is 0.
+ *  <LI> engine-Data structure used while burning.  If graph, the nodes and edges
+ *  are added to the graph as they are generated.  If primitive, the nodes and edges
+ *  are stored in an {@link IntAdjacency} during generation and are only added
+ *  to the graph once generation is complete.  This uses several times less memory
+ *  per edge and, when isdirected is yes, returns the same graph for a given seed.
+ *  Default is graph.
+ *  <LI> inplacesampling-If yes, links to follow are picked by sampling k of n indices
+ *  in place, instead of using {@link ListUtils#pickKAtRandom}, so that burning
+ *  does not create any objects.  The links are picked with the same probabilities
+ *  but the random numbers are used differently, so the generated graph differs
+ *  from the one generated without this option.  Requires engine=primitive.
+ *  Default is no.
+ *  <LI> sinkclass-If specified, the nodes and edges are written, as they are generated,
+ *  to the {@link GeneratorSink} instantiated using Dynamic.forConfigurableName
+ *  (e.g., sink:linqs.gaia.graph.generator.sink.SparseTabDelimSink) instead of being added
+ *  to the graph.  Only the adjacency needed for burning is kept in memory and the
+ *  returned graph only contains the schemas.  Implies engine=primitive.
+ *  <LI> epochsize-If specified, nodes are generated in epochs of at most this many nodes.
+ *  The nodes of an epoch are burned in parallel over the graph generated in the previous
+ *  epochs, each using its own random number streams derived from the seed.  The generated graph
+ *  depends on the seed and the epoch size, but not the number of threads, and differs from
+ *  the one generated without epochs.  Smaller epochs are closer to the sequential model.
+ *  Implies engine=primitive.
+ *  <LI> numthreads-Number of threads to use when generating in epochs and computing statistics.
+ *  Default is the number of available processors.
+ *  <LI> snapshotsizes-Comma delimited list of numbers of nodes.  If specified, when
+ *  the generated graph reaches each of these numbers of nodes, the nodes and edges generated
+ *  so far are written to a {@link GeneratorSink} instantiated from snapshotsinkclass.
+ *  Since nodes are added one at a time, each snapshot is the graph which would be generated
+ *  with numnodes set to its size and the same seed.  The graph object id given to the sink
+ *  is the graph object id followed by an underscore and the number of nodes
+ *  (e.g., g1_10000).  The number of nodes generated is increased to the largest size,
+ *  if needed.  Implies engine=primitive.
+ *  <LI> snapshotsinkclass-{@link GeneratorSink} used to write snapshots, instantiated
+ *  using Dynamic.forConfigurableName (e.g., snapshot:linqs.gaia.graph.generator.sink.SparseTabDelimSink).
+ *  Required if snapshotsizes is specified.
+ *  <LI> maxburnvisits-If specified, a burn stops once it has visited this many nodes,
+ *  even if there are still nodes to burn.  This bounds the time to add a node
+ *  when pf is large, at the cost of changing the model.  The number of burns stopped
+ *  by this cap is logged once generation is complete.  Default is no cap.
+ *  <LI> maxburnedges-If specified, a burn stops once it has created this many edges,
+ *  even if there are still nodes to burn.  The number of burns stopped by this cap
+ *  is logged once generation is complete.  Default is no cap.
+ *  <LI> listenerclass-If specified, the {@link GeneratorListener} instantiated using
+ *  Dynamic.forConfigurableName (e.g., metrics:linqs.gaia.graph.generator.metrics.FileMetricsListener)
+ *  is periodically given the {@link GeneratorMetrics} of the generation
+ *  (i.e., number of nodes and edges, nodes and edges per second, heap used,
+ *  and histograms of the number of nodes visited, edges created and the largest
+ *  number of nodes waiting to be burned, per burn).  The largest degree is only
+ *  recorded when engine=primitive.
+ *  <LI> reportinterval-Minimum number of seconds between reports to the listener.
+ *  Default is 10.
+ *  <LI> checkpointfile-If specified, the state of the generator (i.e., random number streams,
+ *  node and edge key ids, and the nodes and edges generated so far) is periodically
+ *  written to this file.  The file is first written to a temporary file
+ *  (checkpointfile followed by .tmp) which then replaces the previous checkpoint.
+ *  Implies engine=primitive.
+ *  <LI> checkpointinterval-Number of nodes to generate between checkpoints.
+ *  When generating in epochs, checkpoints are only written at the end of an epoch.
+ *  Default is 100000.
+ *  <LI> resume-If yes, and the checkpoint file exists, resume generation from the checkpoint.
+ *  The generated graph is the same as the one generated by an uninterrupted run.
+ *  The seed, pf, pb, duplinks, inplacesampling, epochsize, maxburnvisits and maxburnedges
+ *  parameters must be the same as the run which wrote the checkpoint.  If a sink is specified,
+ *  the nodes and edges in the checkpoint are written to the sink again.  Default is no.
+ *  <LI> statistics-If yes, the {@link GraphStatistics} of the generated graph (i.e., degree
+ *  distributions, estimated clustering coefficient and effective diameter) are computed
+ *  from the adjacency, using numthreads threads, and logged instead of the graph overview.
+ *  They are also computed when a sink is specified.  Requires engine=primitive.
+ *  Default is no.
+ *  <LI> clusteringsamples-Number of nodes sampled to estimate the clustering coefficient.
+ *  Default is 10000.
+ *  <LI> diametersources-Number of nodes to start a breadth first search from
+ *  to estimate the effective diameter.  Default is 100.
  *  </UL>
  * 
  * @author mbilgic
@@ -85,8 +185,8 @@ import umontreal.iro.lecuyer.rng.LFSR113;
  */
 public class ForestFire extends BaseConfigurable implements Generator {
 	private Random rand = null;
-	private GeometricGen geometricX = null;
-	private GeometricGen geometricY = null;
+	private GeometricSampler geometricX = null;
+	private GeometricSampler geometricY = null;
 	private int nodekeyid = 0;
 	private int edgekeyid = 0;
 	
@@ -97,6 +197,38 @@ public class ForestFire extends BaseConfigurable implements Generator {
 	private double pb = .2;
 	private double r = pb/pf;
 	private int seed = 0;
+	private boolean useprimitive = false;
+	private boolean inplacesampling = false;
+	private int epochsize = 0;
+	private int numthreads = Runtime.getRuntime().availableProcessors();
+	private int maxburnvisits = Integer.MAX_VALUE;
+	private int maxburnedges = Integer.MAX_VALUE;
+	private boolean statistics = false;
+	private int clusteringsamples = 10000;
+	private int diametersources = 100;
+	private GraphStatistics graphstatistics = null;
+	
+	// Number of burns, and number of burns stopped by each cap
+	private long numburns = 0;
+	private long visitcaphits = 0;
+	private long edgecaphits = 0;
+	
+	private GeneratorMetrics metrics = null;
+	
+	private GeneratorSink sink = null;
+	private int nodebase = 0;
+	private int edgebase = 0;
+	private LongHashSet sinkedges = null;
+	
+	private int[] snapshotsizes = null;
+	private int nextsnapshot = 0;
+	
+	private static final int CHECKPOINT_MAGIC = 0x46464350;
+	private static final int CHECKPOINT_VERSION = 1;
+	private String checkpointfile = null;
+	private int checkpointinterval = 100000;
+	private boolean resume = false;
+	private int lastcheckpoint = 0;
 	
 	private String graphobjid = "g1";
 	private String graphschemaid = "ffgraph";
@@ -151,12 +283,6 @@ public class ForestFire extends BaseConfigurable implements Generator {
 			isdirected = true;
 		} else if(this.hasParameter("isdirected", "no")) {
 			isdirected = false;
-			
-			// Save the schema id to use for later
-			this.savedesid = this.edgeschemaid;
-			
-			// Use a temporary schema id for now
-			this.edgeschemaid = "tmpffdir";
 		} else if(this.hasParameter("isdirected")) {
 			throw new ConfigurationException("Invalid isdirected option: "
 					+this.getStringParameter("isdirected"));
@@ -175,18 +301,199 @@ public class ForestFire extends BaseConfigurable implements Generator {
 			seed = (int) this.getDoubleParameter("seed");
 		}
 		
+		if(this.hasParameter("engine", "graph")) {
+			this.useprimitive = false;
+		} else if(this.hasParameter("engine", "primitive")) {
+			this.useprimitive = true;
+		} else if(this.hasParameter("engine")) {
+			throw new ConfigurationException("Invalid engine option: "
+					+this.getStringParameter("engine"));
+		}
+		
+		if(this.hasParameter("inplacesampling", "yes")) {
+			this.inplacesampling = true;
+		} else if(this.hasParameter("inplacesampling", "no")) {
+			this.inplacesampling = false;
+		} else if(this.hasParameter("inplacesampling")) {
+			throw new ConfigurationException("Invalid inplacesampling option: "
+					+this.getStringParameter("inplacesampling"));
+		}
+		
+		if(this.hasParameter("epochsize")) {
+			this.epochsize = (int) this.getDoubleParameter("epochsize");
+			if(this.epochsize < 1) {
+				throw new ConfigurationException("Invalid epochsize: "+this.epochsize);
+			}
+			
+			if(this.hasParameter("engine", "graph")) {
+				throw new ConfigurationException("epochsize requires engine=primitive");
+			}
+			
+			this.useprimitive = true;
+		}
+		
+		if(this.hasParameter("numthreads")) {
+			this.numthreads = (int) this.getDoubleParameter("numthreads");
+			if(this.numthreads < 1) {
+				throw new ConfigurationException("Invalid numthreads: "+this.numthreads);
+			}
+		}
+		
+		if(this.hasParameter("maxburnvisits")) {
+			this.maxburnvisits = (int) this.getDoubleParameter("maxburnvisits");
+			if(this.maxburnvisits < 1) {
+				throw new ConfigurationException("Invalid maxburnvisits: "+this.maxburnvisits);
+			}
+		}
+		
+		if(this.hasParameter("maxburnedges")) {
+			this.maxburnedges = (int) this.getDoubleParameter("maxburnedges");
+			if(this.maxburnedges < 1) {
+				throw new ConfigurationException("Invalid maxburnedges: "+this.maxburnedges);
+			}
+		}
+		
+		if(this.hasParameter("sinkclass")) {
+			if(this.hasParameter("engine", "graph")) {
+				throw new ConfigurationException("sinkclass requires engine=primitive");
+			}
+			
+			this.useprimitive = true;
+			this.sink = (GeneratorSink) Dynamic.forConfigurableName(GeneratorSink.class,
+					this.getStringParameter("sinkclass"), this);
+		}
+		
+		if(this.hasParameter("snapshotsizes")) {
+			if(!this.hasParameter("snapshotsinkclass")) {
+				throw new ConfigurationException("snapshotsizes requires snapshotsinkclass");
+			}
+			
+			if(this.hasParameter("engine", "graph")) {
+				throw new ConfigurationException("snapshotsizes requires engine=primitive");
+			}
+			
+			String[] sizes = this.getStringParameter("snapshotsizes").split(",");
+			SortedSet<Integer> sortedsizes = new TreeSet<Integer>();
+			for(String size:sizes) {
+				int numsnapshotnodes = (int) Double.parseDouble(size.trim());
+				if(numsnapshotnodes < 1) {
+					throw new ConfigurationException("Invalid snapshot size: "+size);
+				}
+				
+				sortedsizes.add(numsnapshotnodes);
+			}
+			
+			this.snapshotsizes = new int[sortedsizes.size()];
+			int index = 0;
+			for(Integer size:sortedsizes) {
+				this.snapshotsizes[index++] = size;
+			}
+			
+			// Generate enough nodes for the largest snapshot
+			this.numnodes = Math.max(this.numnodes, sortedsizes.last());
+			this.useprimitive = true;
+		}
+		
+		if(this.hasParameter("listenerclass")) {
+			double reportinterval = 10;
+			if(this.hasParameter("reportinterval")) {
+				reportinterval = this.getDoubleParameter("reportinterval");
+			}
+			
+			GeneratorListener listener = (GeneratorListener) Dynamic.forConfigurableName(
+					GeneratorListener.class, this.getStringParameter("listenerclass"), this);
+			this.metrics = new GeneratorMetrics(ForestFire.class.getSimpleName(),
+					listener, reportinterval);
+		}
+		
+		if(this.hasParameter("checkpointfile")) {
+			if(this.hasParameter("engine", "graph")) {
+				throw new ConfigurationException("checkpointfile requires engine=primitive");
+			}
+			
+			this.checkpointfile = this.getStringParameter("checkpointfile");
+			this.useprimitive = true;
+		}
+		
+		if(this.hasParameter("checkpointinterval")) {
+			this.checkpointinterval = (int) this.getDoubleParameter("checkpointinterval");
+			if(this.checkpointinterval < 1) {
+				throw new ConfigurationException("Invalid checkpointinterval: "+this.checkpointinterval);
+			}
+		}
+		
+		if(this.hasParameter("resume", "yes")) {
+			this.resume = true;
+		} else if(this.hasParameter("resume", "no")) {
+			this.resume = false;
+		} else if(this.hasParameter("resume")) {
+			throw new ConfigurationException("Invalid resume option: "
+					+this.getStringParameter("resume"));
+		}
+		
+		if(this.resume && this.checkpointfile == null) {
+			throw new ConfigurationException("resume requires checkpointfile");
+		}
+		
+		if(this.hasParameter("statistics", "yes")) {
+			if(this.hasParameter("engine", "graph")) {
+				throw new ConfigurationException("statistics requires engine=primitive");
+			}
+			
+			this.statistics = true;
+			this.useprimitive = true;
+		} else if(this.hasParameter("statistics", "no")) {
+			this.statistics = false;
+		} else if(this.hasParameter("statistics")) {
+			throw new ConfigurationException("Invalid statistics option: "
+					+this.getStringParameter("statistics"));
+		}
+		
+		if(this.hasParameter("clusteringsamples")) {
+			this.clusteringsamples = (int) this.getDoubleParameter("clusteringsamples");
+		}
+		
+		if(this.hasParameter("diametersources")) {
+			this.diametersources = (int) this.getDoubleParameter("diametersources");
+		}
+		
+		if(this.inplacesampling && !this.useprimitive) {
+			throw new ConfigurationException("inplacesampling requires engine=primitive");
+		}
+		
+		if(!this.isdirected && !this.useprimitive) {
+			// Save the schema id to use for later
+			this.savedesid = this.edgeschemaid;
+			
+			// Use a temporary schema id for now
+			this.edgeschemaid = "tmpffdir";
+		}
+		
 		// Generate graph
 		Graph graph = generateJustGraph();
 		
-		if(!this.isdirected) {
+		if(!this.isdirected && !this.useprimitive) {
 			this.convertDir2Undir(graph, this.edgeschemaid, this.savedesid);
 		}
 		
-		Log.INFO(GraphUtils.getSimpleGraphOverview(graph));
+		if(this.graphstatistics != null) {
+			Log.INFO("Graph statistics:\n"+this.graphstatistics);
+		} else {
+			Log.INFO(GraphUtils.getSimpleGraphOverview(graph));
+		}
 		
 		return graph;
 	}
 	
+	/**
+	 * Get the statistics of the last generated graph
+	 * 
+	 * @return Statistics, or null if statistics is not yes
+	 */
+	public GraphStatistics getStatistics() {
+		return this.graphstatistics;
+	}
+	
 	/**
 	 * Generate graph
 	 * 
@@ -217,26 +524,71 @@ public class ForestFire extends BaseConfigurable implements Generator {
 		graph.addSchema(nodeschemaid, new Schema(SchemaType.NODE));
 		
 		// Create edge schema
-		graph.addSchema(edgeschemaid, new Schema(SchemaType.DIRECTED));
+		graph.addSchema(edgeschemaid, new Schema(this.isdirected || !this.useprimitive ?
+				SchemaType.DIRECTED : SchemaType.UNDIRECTED));
 		
-		// Note: GeometricGen requires a pvalue, not the mean described in
+		// Note: GeometricSampler requires a pvalue, not the mean described in
 		// page 26.  Since mean = 1-pvalue/pvalue, the equivalent
 		// pvalue of pf/(1.0-pf) and r*pf/(1.0-(r*pf)) are as follows:
 		double geometricXP = 1-pf;
 		double geometricYP = 1-(r*pf);
-		LFSR113.setPackageSeed(new int[]{Math.abs(rand.nextInt(Integer.MAX_VALUE))+2,
-										Math.abs(rand.nextInt(Integer.MAX_VALUE))+8,
-										Math.abs(rand.nextInt(Integer.MAX_VALUE))+16,
-										Math.abs(rand.nextInt(Integer.MAX_VALUE))+128});
-		geometricX = new GeometricGen(new LFSR113(), new GeometricDist(geometricXP));
-		geometricY = new GeometricGen(new LFSR113(), new GeometricDist(geometricYP));
+		LFSR113[] streams = SeedUtils.newLFSR113Streams(
+				new int[]{Math.abs(rand.nextInt(Integer.MAX_VALUE))+2,
+						Math.abs(rand.nextInt(Integer.MAX_VALUE))+8,
+						Math.abs(rand.nextInt(Integer.MAX_VALUE))+16,
+						Math.abs(rand.nextInt(Integer.MAX_VALUE))+128}, 2);
+		geometricX = new GeometricSampler(streams[0], geometricXP);
+		geometricY = new GeometricSampler(streams[1], geometricYP);
+		
+		numburns = 0;
+		visitcaphits = 0;
+		edgecaphits = 0;
 		
 		timer.start();
+		if(this.metrics != null) {
+			this.metrics.start();
+		}
+		
+		this.graphstatistics = null;
+		if(this.useprimitive) {
+			IntAdjacency adj;
+			if(this.sink != null) {
+				this.sink.open(graphschemaid, graphobjid, nodeschemaid, edgeschemaid, this.isdirected);
+				adj = this.epochsize > 0 ?
+						this.generateAdjacencyInEpochs() : this.generateAdjacency();
+				this.sink.close();
+			} else {
+				adj = this.epochsize > 0 ?
+						this.generateAdjacencyInEpochs() : this.generateAdjacency();
+				this.addAdjacencyToGraph(graph, adj);
+			}
+			
+			if(this.statistics) {
+				SimpleTimer statstimer = new SimpleTimer();
+				this.graphstatistics = GraphStatistics.fromAdjacency(adj, this.isdirected);
+				this.graphstatistics.compute(this.numthreads, this.clusteringsamples,
+						this.diametersources, this.seed);
+				Log.INFO("Time to compute statistics: "+statstimer.timeLapse(true));
+			}
+			
+			this.logBurnCaps();
+			if(this.metrics != null) {
+				this.metrics.finish();
+			}
+			
+			Log.INFO("Time to generate graph: "+gengraphtimer.timeLapse(true));
+			
+			return graph;
+		}
+		
 		for(int i=0;i<this.numnodes;i++){
 			GraphItemID giid = new GraphItemID(gid, nodeschemaid, ""+(nodekeyid++));
 			
 			// Create nodes
 			Node node = graph.addNode(giid);
+			if(this.metrics != null) {
+				this.metrics.addNode();
+			}
 			
 			// Don't connect first node
 			if(graph.numNodes()==1) {
@@ -247,10 +599,29 @@ public class ForestFire extends BaseConfigurable implements Generator {
 			connectToOtherNodes(node, graph);
 		}		
 		
+		this.logBurnCaps();
+		if(this.metrics != null) {
+			this.metrics.finish();
+		}
+		
 		Log.INFO("Time to generate graph: "+gengraphtimer.timeLapse(true));
 		
 		return graph;
 	}
+	
+	/**
+	 * Log the number of burns stopped by maxburnvisits and maxburnedges, if specified
+	 */
+	private void logBurnCaps() {
+		if(this.maxburnvisits == Integer.MAX_VALUE && this.maxburnedges == Integer.MAX_VALUE) {
+			return;
+		}
+		
+		double denominator = Math.max(this.numburns, 1);
+		Log.INFO("Burns: "+this.numburns
+				+" Stopped by maxburnvisits: "+this.visitcaphits+" ("+(100*this.visitcaphits/denominator)+"%)"
+				+" Stopped by maxburnedges: "+this.edgecaphits+" ("+(100*this.edgecaphits/denominator)+"%)");
+	}
 
 	/**
 	 * Connect node to other nodes, as defined by forest fire model.
@@ -269,7 +640,22 @@ public class ForestFire extends BaseConfigurable implements Generator {
 		connectNodes.add(ambassadorNode);
 		Set<Node> prevtargets = new HashSet<Node>();
 		
+		numburns++;
+		int numvisits = 0;
+		int numburnedges = 0;
+		int burndepth = 1;
 		while(!connectNodes.isEmpty()){
+			if(numvisits >= maxburnvisits) {
+				visitcaphits++;
+				break;
+			}
+			
+			if(numburnedges >= maxburnedges) {
+				edgecaphits++;
+				break;
+			}
+			
+			numvisits++;
 			Node dest = connectNodes.removeLast();
 			nodesVisited.add(dest);
 			
@@ -323,6 +709,8 @@ public class ForestFire extends BaseConfigurable implements Generator {
 				}
 			}
 			
+			burndepth = Math.max(burndepth, connectNodes.size());
+			
 			if(!duplinks) {
 				if(prevtargets.contains(dest)) {
 					continue;
@@ -334,13 +722,33 @@ public class ForestFire extends BaseConfigurable implements Generator {
 					new GraphItemID((GraphID) graph.getID(),edgeschemaid,""+(edgekeyid++)),
 					source, dest);
 			
+			numburnedges++;
 			prevtargets.add(dest);
+			if(this.metrics != null) {
+				this.metrics.addEdge();
+			}
 			
 			if(graph.numEdges()%1000 == 0) {
 				Log.INFO("Num Dir Edges: "+graph.numEdges()+" "+timer.timeLapse(true));
 				timer.start();
 			}
 		}
+		
+		this.recordBurn(numvisits, numburnedges, burndepth);
+	}
+	
+	/**
+	 * Record the size of a burn in the metrics, if specified
+	 * 
+	 * @param numvisits Number of nodes visited
+	 * @param numburnedges Number of edges created
+	 * @param burndepth Largest number of nodes waiting to be burned
+	 */
+	private void recordBurn(int numvisits, int numburnedges, int burndepth) {
+		if(this.metrics != null) {
+			this.metrics.recordBurn(numvisits, numburnedges);
+			this.metrics.recordQueueDepth(burndepth);
+		}
 	}
 	
 	/**
@@ -374,6 +782,842 @@ public class ForestFire extends BaseConfigurable implements Generator {
 		return ambassadorNode;
 	}
 	
+	/**
+	 * Generate the nodes and edges of the graph using
+	 * an {@link IntAdjacency} instead of a Graph.
+	 * The node with index i corresponds to the i-th node added to the graph
+	 * in {@link #generateJustGraph()} and the random numbers are drawn
+	 * in the same order, so the resulting graph is the same.
+	 * If a sink is specified, the nodes and edges are also added to the sink
+	 * and the adjacency does not keep the list of edges.
+	 * 
+	 * @return Generated adjacency
+	 */
+	private IntAdjacency generateAdjacency() {
+		IntAdjacency adj = this.createAdjacency();
+		int firstnode = this.resumeCheckpoint(adj);
+		
+		Burner burner = new Burner(rand, geometricX, geometricY,
+				new IntMarkSet(true, this.numnodes), new IntMarkSet(true, this.numnodes));
+		
+		for(int i=firstnode;i<this.numnodes;i++){
+			int node = this.addNode(adj);
+			
+			// Don't connect first node
+			if(adj.numNodes()==1) {
+				continue;
+			}
+			
+			// Connect node to other nodes, as appropriate
+			burner.burn(node, adj.numNodes(), adj, true);
+			this.recordBurn(burner.numvisits, burner.numburnedges, burner.burndepth);
+			this.checkpoint(adj);
+		}
+		
+		burner.addBurnCounts();
+		
+		this.writeSnapshots(adj);
+		
+		return adj;
+	}
+	
+	/**
+	 * Generate the nodes and edges of the graph in epochs.
+	 * The nodes of an epoch are burned in parallel, each over the
+	 * adjacency containing only the nodes and edges added in previous epochs
+	 * and using its own random number streams derived from the seed.
+	 * The links of the nodes are added to the adjacency, in order of the nodes,
+	 * once all the nodes of the epoch are burned.
+	 * The resulting graph depends on the seed and the epoch size,
+	 * but not on the number of threads.
+	 * <p>
+	 * To avoid the first nodes all connecting to the same few nodes,
+	 * the size of an epoch is never more than the number of nodes
+	 * added in previous epochs.
+	 * 
+	 * @return Generated adjacency
+	 */
+	private IntAdjacency generateAdjacencyInEpochs() {
+		IntAdjacency adj = this.createAdjacency();
+		int firstnode = this.resumeCheckpoint(adj);
+		
+		double geometricXP = 1-pf;
+		double geometricYP = 1-(r*pf);
+		EpochWorker[] workers = new EpochWorker[this.numthreads];
+		for(int i=0; i<workers.length; i++) {
+			workers[i] = new EpochWorker(geometricXP, geometricYP);
+		}
+		
+		// Number of nodes and edges at the end of each epoch
+		List<int[]> epochsizes = new ArrayList<int[]>();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(this.numthreads);
+		try {
+			int epochstart = firstnode;
+			while(epochstart < this.numnodes) {
+				int epochend = epochstart + Math.min(this.epochsize, Math.max(epochstart, 1));
+				epochend = Math.min(epochend, this.numnodes);
+				
+				// Split the nodes of the epoch among the workers
+				int numepochnodes = epochend-epochstart;
+				int numworkers = Math.min(workers.length, numepochnodes);
+				List<Future<Object>> futures = new ArrayList<Future<Object>>(numworkers);
+				for(int i=0; i<numworkers; i++) {
+					workers[i].setRange(adj, epochstart,
+							epochstart + (int) ((long) numepochnodes*i/numworkers),
+							epochstart + (int) ((long) numepochnodes*(i+1)/numworkers));
+					futures.add(executor.submit(workers[i]));
+				}
+				
+				for(Future<Object> f:futures) {
+					f.get();
+				}
+				
+				// Add the nodes and links of the epoch in order
+				for(int i=0; i<numworkers; i++) {
+					workers[i].addToAdjacency(adj);
+				}
+				
+				epochsizes.add(new int[]{adj.numNodes(), adj.numEdges()});
+				epochstart = epochend;
+				
+				this.checkpoint(adj);
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		
+		for(EpochWorker worker:workers) {
+			worker.burner.addBurnCounts();
+		}
+		
+		this.writeSnapshots(adj);
+		this.logDensification(epochsizes);
+		
+		return adj;
+	}
+	
+	/**
+	 * Log the densification exponent, a, of the graph over the epochs
+	 * (i.e., number of edges = c * (number of nodes)^a),
+	 * estimated using least squares over the log of the number of nodes
+	 * and edges at the end of each epoch.
+	 * 
+	 * @param epochsizes Number of nodes and edges at the end of each epoch
+	 */
+	private void logDensification(List<int[]> epochsizes) {
+		double sumx = 0, sumy = 0, sumxx = 0, sumxy = 0;
+		int numpoints = 0;
+		for(int[] size:epochsizes) {
+			if(size[0] < 2 || size[1] < 1) {
+				continue;
+			}
+			
+			double x = Math.log(size[0]);
+			double y = Math.log(size[1]);
+			sumx += x;
+			sumy += y;
+			sumxx += x*x;
+			sumxy += x*y;
+			numpoints++;
+		}
+		
+		double denominator = numpoints*sumxx - sumx*sumx;
+		if(numpoints < 2 || denominator == 0) {
+			return;
+		}
+		
+		Log.INFO("Epochs: "+epochsizes.size()+" Epoch size: "+this.epochsize
+				+" Densification exponent: "+((numpoints*sumxy - sumx*sumy)/denominator));
+	}
+	
+	/**
+	 * Create the adjacency to generate the graph in.
+	 * The list of edges is not kept if the edges are written to a sink
+	 * and not needed for snapshots or checkpoints.
+	 * 
+	 * @return Empty adjacency
+	 */
+	private IntAdjacency createAdjacency() {
+		this.nodebase = nodekeyid;
+		this.edgebase = edgekeyid;
+		this.nextsnapshot = 0;
+		this.lastcheckpoint = 0;
+		this.sinkedges = this.sink!=null && !this.isdirected ? new LongHashSet(2*this.numnodes) : null;
+		
+		return new IntAdjacency(this.numnodes, 2*this.numnodes,
+				this.sink==null || this.snapshotsizes!=null || this.checkpointfile!=null);
+	}
+	
+	/**
+	 * Parameters which must be the same when resuming from a checkpoint
+	 * 
+	 * @return String representation of the parameters
+	 */
+	private String getCheckpointConfiguration() {
+		return "seed="+seed+",pf="+pf+",pb="+pb+",duplinks="+duplinks
+			+",inplacesampling="+inplacesampling+",epochsize="+epochsize
+			+",maxburnvisits="+maxburnvisits+",maxburnedges="+maxburnedges;
+	}
+	
+	/**
+	 * Write a checkpoint if at least checkpointinterval nodes were added
+	 * since the last checkpoint and the graph is not complete.
+	 * <p>
+	 * The checkpoint contains, in order, a magic number and version,
+	 * the parameters from {@link #getCheckpointConfiguration()},
+	 * the number of nodes and edges, the node and edge key ids,
+	 * the serialized Random, the states of the LFSR113 streams
+	 * of the geometric generators, and the source and target of every edge.
+	 * 
+	 * @param adj Adjacency
+	 */
+	private void checkpoint(IntAdjacency adj) {
+		int numadjnodes = adj.numNodes();
+		if(this.checkpointfile == null || numadjnodes >= this.numnodes
+				|| numadjnodes - this.lastcheckpoint < this.checkpointinterval) {
+			return;
+		}
+		
+		SimpleTimer checkpointtimer = new SimpleTimer();
+		File file = new File(this.checkpointfile);
+		File tmpfile = new File(this.checkpointfile+".tmp");
+		try {
+			ByteArrayOutputStream randbytes = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(randbytes);
+			oos.writeObject(rand);
+			oos.close();
+			
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tmpfile), 1<<16));
+			out.writeInt(CHECKPOINT_MAGIC);
+			out.writeInt(CHECKPOINT_VERSION);
+			out.writeUTF(this.getCheckpointConfiguration());
+			
+			int numadjedges = adj.numEdges();
+			out.writeInt(numadjnodes);
+			out.writeInt(numadjedges);
+			out.writeInt(nodebase);
+			out.writeInt(edgebase);
+			out.writeInt(nodekeyid);
+			out.writeInt(edgekeyid);
+			
+			out.writeInt(randbytes.size());
+			randbytes.writeTo(out);
+			for(GeometricSampler gen: new GeometricSampler[]{geometricX, geometricY}) {
+				int[] state = ((LFSR113) gen.getStream()).getState();
+				for(int s:state) {
+					out.writeInt(s);
+				}
+			}
+			
+			for(int i=0; i<numadjedges; i++) {
+				out.writeInt(adj.getSource(i));
+				out.writeInt(adj.getTarget(i));
+			}
+			
+			out.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to write checkpoint: "+tmpfile, e);
+		}
+		
+		if((file.exists() && !file.delete()) || !tmpfile.renameTo(file)) {
+			throw new InvalidStateException("Unable to replace checkpoint: "+file);
+		}
+		
+		this.lastcheckpoint = numadjnodes;
+		Log.INFO("Checkpoint written: nodes="+numadjnodes+" edges="+adj.numEdges()
+				+" "+checkpointtimer.timeLapse(true));
+	}
+	
+	/**
+	 * Restore the state of the generator from the checkpoint file,
+	 * if resume is yes and the file exists.  The nodes and edges of the
+	 * checkpoint are added to the adjacency, and sink, if specified.
+	 * 
+	 * @param adj Empty adjacency
+	 * @return Number of nodes restored
+	 */
+	private int resumeCheckpoint(IntAdjacency adj) {
+		if(!this.resume) {
+			return 0;
+		}
+		
+		File file = new File(this.checkpointfile);
+		if(!file.exists()) {
+			Log.INFO("Checkpoint not found, starting from the beginning: "+file);
+			return 0;
+		}
+		
+		int numadjnodes;
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file), 1<<16));
+			if(in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION) {
+				in.close();
+				throw new InvalidStateException("Invalid checkpoint file: "+file);
+			}
+			
+			String configuration = in.readUTF();
+			if(!configuration.equals(this.getCheckpointConfiguration())) {
+				in.close();
+				throw new ConfigurationException("Checkpoint was written using "+configuration
+						+" but resuming with "+this.getCheckpointConfiguration());
+			}
+			
+			numadjnodes = in.readInt();
+			int numadjedges = in.readInt();
+			if(numadjnodes > this.numnodes) {
+				in.close();
+				throw new ConfigurationException("Checkpoint has more nodes than requested: "
+						+numadjnodes+" > "+this.numnodes);
+			}
+			
+			this.nodebase = in.readInt();
+			this.edgebase = in.readInt();
+			int checkpointnodekeyid = in.readInt();
+			int checkpointedgekeyid = in.readInt();
+			
+			byte[] randbytes = new byte[in.readInt()];
+			in.readFully(randbytes);
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(randbytes));
+			this.rand = (Random) ois.readObject();
+			ois.close();
+			
+			for(GeometricSampler gen: new GeometricSampler[]{geometricX, geometricY}) {
+				int[] state = new int[4];
+				for(int i=0; i<state.length; i++) {
+					state[i] = in.readInt();
+				}
+				
+				RandomStream stream = gen.getStream();
+				((LFSR113) stream).setSeed(state);
+			}
+			
+			this.nodekeyid = this.nodebase;
+			this.edgekeyid = this.edgebase;
+			for(int i=0; i<numadjnodes; i++) {
+				adj.addNode();
+				if(this.sink != null) {
+					this.sink.addNode(nodekeyid++);
+				}
+			}
+			
+			for(int i=0; i<numadjedges; i++) {
+				int source = in.readInt();
+				int target = in.readInt();
+				adj.addEdge(source, target);
+				if(this.sink != null) {
+					this.addSinkEdge(source, target);
+				}
+			}
+			
+			in.close();
+			
+			this.nodekeyid = checkpointnodekeyid;
+			this.edgekeyid = checkpointedgekeyid;
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read checkpoint: "+file, e);
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException("Unable to read checkpoint: "+file, e);
+		}
+		
+		// Snapshots smaller than the checkpoint were written before it
+		while(this.snapshotsizes != null && this.nextsnapshot < this.snapshotsizes.length
+				&& this.snapshotsizes[this.nextsnapshot] < numadjnodes) {
+			this.nextsnapshot++;
+		}
+		
+		this.lastcheckpoint = numadjnodes;
+		Log.INFO("Resumed from checkpoint: nodes="+numadjnodes+" edges="+adj.numEdges());
+		
+		return numadjnodes;
+	}
+	
+	/**
+	 * Write a snapshot of the adjacency for each snapshot size equal to
+	 * the current number of nodes.  Since the edges of a node are only added
+	 * right after the node, this is done before adding a node
+	 * and after all the nodes are added.
+	 * 
+	 * @param adj Adjacency
+	 */
+	private void writeSnapshots(IntAdjacency adj) {
+		if(this.snapshotsizes == null) {
+			return;
+		}
+		
+		int numadjnodes = adj.numNodes();
+		while(this.nextsnapshot < this.snapshotsizes.length
+				&& this.snapshotsizes[this.nextsnapshot] == numadjnodes) {
+			SimpleTimer snapshottimer = new SimpleTimer();
+			
+			GeneratorSink snapshotsink = (GeneratorSink) Dynamic.forConfigurableName(GeneratorSink.class,
+					this.getStringParameter("snapshotsinkclass"), this);
+			snapshotsink.open(graphschemaid, graphobjid+"_"+numadjnodes, nodeschemaid, edgeschemaid,
+					this.isdirected);
+			for(int i=0; i<numadjnodes; i++) {
+				snapshotsink.addNode(nodebase+i);
+			}
+			
+			// Undirected edges are numbered in the order they are first generated,
+			// as when written to the sink
+			int numadjedges = adj.numEdges();
+			LongHashSet snapshotedges = this.isdirected ? null : new LongHashSet(numadjedges);
+			int snapshotedgeid = edgebase;
+			for(int i=0; i<numadjedges; i++) {
+				int source = adj.getSource(i);
+				int target = adj.getTarget(i);
+				if(this.isdirected || snapshotedges.add(LongHashSet.undirectedKey(source, target))) {
+					snapshotsink.addEdge(snapshotedgeid++, nodebase+source, nodebase+target);
+				}
+			}
+			
+			snapshotsink.close();
+			
+			Log.INFO("Snapshot written: nodes="+numadjnodes+" edges="+(snapshotedgeid-edgebase)
+					+" "+snapshottimer.timeLapse(true));
+			this.nextsnapshot++;
+		}
+	}
+	
+	/**
+	 * Add a node to the adjacency, and sink, if specified
+	 * 
+	 * @param adj Adjacency
+	 * @return Index of the new node
+	 */
+	private int addNode(IntAdjacency adj) {
+		this.writeSnapshots(adj);
+		
+		int node = adj.addNode();
+		if(this.sink != null) {
+			this.sink.addNode(nodekeyid++);
+		}
+		
+		if(this.metrics != null) {
+			this.metrics.addNode();
+		}
+		
+		return node;
+	}
+	
+	/**
+	 * Add a link to the adjacency, and sink, if specified
+	 * 
+	 * @param adj Adjacency
+	 * @param source Source node index
+	 * @param dest Target node index
+	 */
+	private void addLink(IntAdjacency adj, int source, int dest) {
+		adj.addEdge(source, dest);
+		if(this.sink != null) {
+			this.addSinkEdge(source, dest);
+		}
+		
+		if(this.metrics != null) {
+			this.metrics.addEdge();
+			this.metrics.recordDegree(adj.outDegree(source)+adj.inDegree(source));
+			this.metrics.recordDegree(adj.outDegree(dest)+adj.inDegree(dest));
+		}
+		
+		if(adj.numEdges()%1000 == 0) {
+			Log.INFO("Num Dir Edges: "+adj.numEdges()+" "+timer.timeLapse(true));
+			timer.start();
+		}
+	}
+	
+	/**
+	 * Write an edge to the sink.  If the graph is undirected,
+	 * the edge is only written if it is the first edge between its nodes.
+	 * 
+	 * @param source Source node index
+	 * @param dest Target node index
+	 */
+	private void addSinkEdge(int source, int dest) {
+		if(this.isdirected || this.sinkedges.add(LongHashSet.undirectedKey(source, dest))) {
+			this.sink.addEdge(edgekeyid++, nodebase+source, nodebase+dest);
+		}
+	}
+	
+	/**
+	 * State used to connect nodes to other nodes, as defined by forest fire model,
+	 * over an {@link IntAdjacency}.
+	 * <p>
+	 * Visited nodes and previous targets are marked using {@link IntMarkSet}s
+	 * which are cleared in constant time and the nodes to burn are kept in a
+	 * reusable int stack, so no objects are created per burn unless links
+	 * are picked using {@link ListUtils#pickKAtRandom}.
+	 */
+	private class Burner {
+		private final Random rand;
+		private final GeometricSampler geometricX;
+		private final GeometricSampler geometricY;
+		private final IntMarkSet visited;
+		private final IntMarkSet targeted;
+		private int[] burnstack = new int[16];
+		private int burnstacksize = 0;
+		
+		// Number of nodes visited, edges created and largest burn stack size of the last burn
+		private int numvisits = 0;
+		private int numburnedges = 0;
+		private int burndepth = 0;
+		private int[] picked = new int[16];
+		
+		// Targets of the links from the last burn, if not added to the adjacency
+		private int[] links = new int[16];
+		private int numlinks = 0;
+		
+		// Number of burns, and number of burns stopped by each cap
+		private long numburns = 0;
+		private long visitcaphits = 0;
+		private long edgecaphits = 0;
+		
+		public Burner(Random rand, GeometricSampler geometricX, GeometricSampler geometricY,
+				IntMarkSet visited, IntMarkSet targeted) {
+			this.rand = rand;
+			this.geometricX = geometricX;
+			this.geometricY = geometricY;
+			this.visited = visited;
+			this.targeted = targeted;
+		}
+		
+		/**
+		 * Connect node to other nodes, as defined by forest fire model,
+		 * using the node indices of the adjacency structure.
+		 * 
+		 * @param source Source node index
+		 * @param numcandidates Number of nodes, starting from index 0,
+		 * which can be chosen as the ambassador node
+		 * @param adj Adjacency to burn over
+		 * @param addlinks If true, add the links to the adjacency as they are created.
+		 * Otherwise, only store the targets of the links in {@link #links}.
+		 */
+		public void burn(int source, int numcandidates, IntAdjacency adj, boolean addlinks) {
+			visited.clear();
+			targeted.clear();
+			numlinks = 0;
+			
+			visited.add(source);
+			
+			int ambassadorNode = this.getAmbassadorNode(numcandidates, source);
+			
+			burnstacksize = 0;
+			burndepth = 0;
+			this.pushBurnNode(ambassadorNode);
+			
+			numburns++;
+			numvisits = 0;
+			numburnedges = 0;
+			while(burnstacksize!=0){
+				if(numvisits >= maxburnvisits) {
+					visitcaphits++;
+					break;
+				}
+				
+				if(numburnedges >= maxburnedges) {
+					edgecaphits++;
+					break;
+				}
+				
+				numvisits++;
+				int dest = burnstack[--burnstacksize];
+				visited.add(dest);
+				
+				// Number of links to follow from this node
+				int x = geometricX.nextInt();
+				int y = geometricY.nextInt();
+				
+				// Chase x outlinks
+				if(x!=0){
+					this.chaseLinks(adj, dest, x, true);
+				}
+				
+				// Chase y inlinks
+				if(y!=0){
+					this.chaseLinks(adj, dest, y, false);
+				}
+				
+				if(!duplinks) {
+					if(targeted.contains(dest)) {
+						continue;
+					}
+				}
+				
+				// Add a link
+				if(addlinks) {
+					ForestFire.this.addLink(adj, source, dest);
+				} else {
+					if(numlinks == links.length) {
+						links = Arrays.copyOf(links, 2*links.length);
+					}
+					
+					links[numlinks++] = dest;
+				}
+				
+				numburnedges++;
+				targeted.add(dest);
+			}
+		}
+		
+		/**
+		 * Add the burn counts of this burner to those of the generator
+		 */
+		public void addBurnCounts() {
+			ForestFire.this.numburns += numburns;
+			ForestFire.this.visitcaphits += visitcaphits;
+			ForestFire.this.edgecaphits += edgecaphits;
+			numburns = 0;
+			visitcaphits = 0;
+			edgecaphits = 0;
+		}
+		
+		/**
+		 * Pick up to k of the outlinks, or inlinks, of a node at random
+		 * and add the other ends which were not visited in this burn
+		 * to the burn stack.
+		 * 
+		 * @param adj Adjacency
+		 * @param dest Node whose links to follow
+		 * @param k Number of links to follow
+		 * @param outlinks If true, follow outlinks.  Otherwise, follow inlinks.
+		 */
+		private void chaseLinks(IntAdjacency adj, int dest, int k, boolean outlinks) {
+			int degree = outlinks ? adj.outDegree(dest) : adj.inDegree(dest);
+			
+			if(degree <= k) {
+				for(int i=0; i<degree; i++) {
+					int bdn = outlinks ? adj.getOut(dest, i) : adj.getIn(dest, i);
+					if(!visited.contains(bdn)) {
+						this.pushBurnNode(bdn);
+					}
+				}
+			} else if(inplacesampling) {
+				int numpicked = this.pickKOfN(k, degree);
+				for(int i=0; i<numpicked; i++) {
+					int bdn = outlinks ? adj.getOut(dest, picked[i]) : adj.getIn(dest, picked[i]);
+					if(!visited.contains(bdn)) {
+						this.pushBurnNode(bdn);
+					}
+				}
+			} else {
+				List<Integer> alllinks = new ArrayList<Integer>(degree);
+				for(int i=0; i<degree; i++) {
+					alllinks.add(outlinks ? adj.getOut(dest, i) : adj.getIn(dest, i));
+				}
+				
+				@SuppressWarnings("unchecked")
+				List<Integer> pickedLinks = (List<Integer>) ListUtils.pickKAtRandom(alllinks,k,rand);
+				for(Integer bdn: pickedLinks){
+					if(!visited.contains(bdn)) {
+						this.pushBurnNode(bdn);
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Pick k distinct indices from 0 to n-1, uniformly at random,
+		 * using Floyd's algorithm.  The picked indices are stored in
+		 * the first k entries of the picked array.
+		 * <p>
+		 * Note: Checking if an index was already picked is linear in k.
+		 * This is cheaper than hashing since k is geometrically distributed
+		 * and is usually very small.
+		 * 
+		 * @param k Number of indices to pick
+		 * @param n Number of indices to pick from
+		 * @return Number of indices picked
+		 */
+		private int pickKOfN(int k, int n) {
+			if(picked.length < k) {
+				picked = new int[Math.max(k, 2*picked.length)];
+			}
+			
+			int numpicked = 0;
+			for(int j=n-k; j<n; j++) {
+				int t = rand.nextInt(j+1);
+				for(int i=0; i<numpicked; i++) {
+					if(picked[i]==t) {
+						t = j;
+						break;
+					}
+				}
+				
+				picked[numpicked++] = t;
+			}
+			
+			return numpicked;
+		}
+		
+		/**
+		 * Push node to the burn stack
+		 * 
+		 * @param node Node index
+		 */
+		private void pushBurnNode(int node) {
+			if(burnstacksize == burnstack.length) {
+				burnstack = Arrays.copyOf(burnstack, 2*burnstack.length);
+			}
+			
+			burnstack[burnstacksize++] = node;
+			if(burnstacksize > burndepth) {
+				burndepth = burnstacksize;
+			}
+		}
+		
+		/**
+		 * Select an ambassador node
+		 * 
+		 * @param numcandidates Number of nodes, starting from index 0,
+		 * which can be chosen as the ambassador node
+		 * @param source Source node index
+		 * @return Ambassador node index
+		 */
+		private int getAmbassadorNode(int numcandidates, int source) {
+			// Cannot get an ambassador node if the source is the only candidate
+			if(numcandidates == 0 || (numcandidates == 1 && source == 0)) {
+				throw new InvalidStateException("Insufficient number of nodes to" +
+						"choose ambassador node: "+numcandidates);
+			}
+			
+			int ambassadorindex;
+			do {
+				ambassadorindex = rand.nextInt(numcandidates);
+			} while(ambassadorindex == source);
+			
+			return ambassadorindex;
+		}
+	}
+	
+	/**
+	 * Worker which burns a range of the nodes of an epoch.
+	 * The random number streams of the worker are reseeded
+	 * for each node using a seed derived from the generator seed and
+	 * the node index.
+	 */
+	private class EpochWorker implements Callable<Object> {
+		private final Random noderand = new Random();
+		private final LFSR113 streamx = SeedUtils.newLFSR113(SeedUtils.lfsr113Seed(0));
+		private final LFSR113 streamy = SeedUtils.newLFSR113(SeedUtils.lfsr113Seed(1));
+		private final Burner burner;
+		
+		private IntAdjacency adj = null;
+		private int epochstart = 0;
+		private int start = 0;
+		private int end = 0;
+		
+		// Number of links of each node in the range and the targets of those links
+		private int[] numnodelinks = new int[16];
+		
+		// Number of nodes visited and largest burn stack size of each node in the range
+		private int[] numnodevisits = new int[16];
+		private int[] nodeburndepth = new int[16];
+		private int[] linktargets = new int[16];
+		private int numlinktargets = 0;
+		
+		public EpochWorker(double geometricXP, double geometricYP) {
+			this.burner = new Burner(noderand,
+					new GeometricSampler(streamx, geometricXP),
+					new GeometricSampler(streamy, geometricYP),
+					new IntMarkSet(false, 16), new IntMarkSet(false, 16));
+		}
+		
+		/**
+		 * Set the nodes to burn
+		 * 
+		 * @param adj Adjacency containing the nodes and edges of previous epochs
+		 * @param epochstart Index of first node in the epoch
+		 * @param start Index of first node to burn
+		 * @param end Index after the last node to burn
+		 */
+		public void setRange(IntAdjacency adj, int epochstart, int start, int end) {
+			this.adj = adj;
+			this.epochstart = epochstart;
+			this.start = start;
+			this.end = end;
+			
+			if(numnodelinks.length < end-start) {
+				numnodelinks = new int[end-start];
+				numnodevisits = new int[end-start];
+				nodeburndepth = new int[end-start];
+			}
+		}
+		
+		public Object call() {
+			numlinktargets = 0;
+			for(int node=start; node<end; node++) {
+				long nodeseed = SeedUtils.deriveSeed(seed, node);
+				noderand.setSeed(nodeseed);
+				streamx.setSeed(SeedUtils.lfsr113Seed(SeedUtils.deriveSeed(nodeseed, 0)));
+				streamy.setSeed(SeedUtils.lfsr113Seed(SeedUtils.deriveSeed(nodeseed, 1)));
+				
+				// Don't connect first node
+				if(epochstart==0) {
+					numnodelinks[node-start] = 0;
+					continue;
+				}
+				
+				burner.burn(node, epochstart, adj, false);
+				
+				if(linktargets.length < numlinktargets+burner.numlinks) {
+					linktargets = Arrays.copyOf(linktargets,
+							Math.max(numlinktargets+burner.numlinks, 2*linktargets.length));
+				}
+				
+				System.arraycopy(burner.links, 0, linktargets, numlinktargets, burner.numlinks);
+				numlinktargets += burner.numlinks;
+				numnodelinks[node-start] = burner.numlinks;
+				numnodevisits[node-start] = burner.numvisits;
+				nodeburndepth[node-start] = burner.burndepth;
+			}
+			
+			return null;
+		}
+		
+		/**
+		 * Add the burned nodes, and their links, to the adjacency
+		 * 
+		 * @param adj Adjacency
+		 */
+		public void addToAdjacency(IntAdjacency adj) {
+			int index = 0;
+			for(int node=start; node<end; node++) {
+				ForestFire.this.addNode(adj);
+				for(int i=0; i<numnodelinks[node-start]; i++) {
+					ForestFire.this.addLink(adj, node, linktargets[index++]);
+				}
+				
+				if(epochstart!=0) {
+					ForestFire.this.recordBurn(numnodevisits[node-start],
+							numnodelinks[node-start], nodeburndepth[node-start]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Add the nodes and edges of the adjacency to the graph.
+	 * Nodes and edges are added in the order of their indices.
+	 * If the graph is undirected, only the first edge between two nodes
+	 * is added, as an undirected edge.
+	 * 
+	 * @param graph Graph to add nodes and edges to
+	 * @param adj Adjacency
+	 */
+	private void addAdjacencyToGraph(Graph graph, IntAdjacency adj) {
+		GraphMaterializer materializer = new GraphMaterializer(graph, nodeschemaid, edgeschemaid,
+				this.isdirected, nodekeyid, edgekeyid, adj.numNodes(), adj.numEdges());
+		materializer.addAdjacency(adj);
+		
+		nodekeyid = materializer.getNextNodeID();
+		edgekeyid = materializer.getNextEdgeID();
+	}
+	
 	/**
 	 * Convert directed edges to undirected
 	 * 
@@ -0,0 +1,77 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import linqs.gaia.exception.ConfigurationException;
+import umontreal.iro.lecuyer.rng.RandomStream;
+
+/**
+ * Generator of geometrically distributed ints, by inversion,
+ * using the given stream.  The values returned are the same as those of
+ * {@link umontreal.iro.lecuyer.randvar.GeometricGen} for the same stream and p.
+ * <p>
+ * Note: GeometricGen uses {@link umontreal.iro.lecuyer.probdist.GeometricDist#inverseF(double, double)}
+ * which caches log(1-p) in static fields.  Using it with different values of p
+ * in different threads may return values computed using the wrong p.
+ * This generator stores log(1-p) in the instance instead.
+ */
+public class GeometricSampler {
+	private final RandomStream stream;
+	private final double p;
+	private final double v;
+	
+	/**
+	 * Create generator
+	 * 
+	 * @param stream Stream of uniform random numbers
+	 * @param p Probability of success, between 0 and 1
+	 */
+	public GeometricSampler(RandomStream stream, double p) {
+		if(p < 0 || p > 1) {
+			throw new ConfigurationException("p not in [0,1]: "+p);
+		}
+		
+		this.stream = stream;
+		this.p = p;
+		this.v = Math.log1p(-p);
+	}
+	
+	/**
+	 * @return Number of failures before the first success
+	 */
+	public int nextInt() {
+		double u = stream.nextDouble();
+		if(p >= 1 || u <= 0) {
+			return 0;
+		}
+		
+		if(u >= 1 || p <= 0) {
+			return Integer.MAX_VALUE;
+		}
+		
+		return (int) Math.floor(Math.log1p(-u)/v);
+	}
+	
+	/**
+	 * @return Stream of uniform random numbers used
+	 */
+	public RandomStream getStream() {
+		return stream;
+	}
+}
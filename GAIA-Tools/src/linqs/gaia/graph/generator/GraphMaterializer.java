@@ -0,0 +1,194 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import java.util.Arrays;
+
+import linqs.gaia.exception.InvalidStateException;
+import linqs.gaia.graph.Graph;
+import linqs.gaia.graph.Node;
+import linqs.gaia.identifiable.GraphID;
+import linqs.gaia.identifiable.GraphItemID;
+
+/**
+ * Adds the nodes and edges of a graph, generated using node indices
+ * (e.g., in an {@link IntAdjacency}), to a {@link Graph}.
+ * <p>
+ * Nodes are added in the order of their indices, with consecutive ids,
+ * and kept in an array so that the nodes of each edge are resolved by index,
+ * without creating their {@link GraphItemID}s or looking them up in the graph.
+ * Each edge is added with the next edge id.  If undirected,
+ * only the first edge between each pair of nodes is added,
+ * unless the caller guarantees the edges are unique.
+ * The ids are {@link GraphItemID}s with decimal string object ids.
+ */
+public class GraphMaterializer {
+	private Graph graph;
+	private GraphID gid;
+	private String nodeschemaid;
+	private String edgeschemaid;
+	private boolean isdirected;
+	
+	private Node[] nodes;
+	private int numnodes = 0;
+	private int nodeid;
+	private int edgeid;
+	private LongHashSet undirectededges = null;
+	
+	/**
+	 * Create a materializer adding to the given graph
+	 * 
+	 * @param graph Graph to add to, containing the node and edge schemas
+	 * @param nodeschemaid Schema ID of the nodes
+	 * @param edgeschemaid Schema ID of the edges
+	 * @param isdirected If true, edges are added as directed edges.
+	 * Otherwise, edges are added as undirected edges.
+	 * @param firstnodeid Id of the node with index 0
+	 * @param firstedgeid Id of the first edge added
+	 * @param expectednodes Expected number of nodes
+	 * @param expectededges Expected number of edges
+	 */
+	public GraphMaterializer(Graph graph, String nodeschemaid, String edgeschemaid,
+			boolean isdirected, int firstnodeid, int firstedgeid,
+			int expectednodes, int expectededges) {
+		this(graph, nodeschemaid, edgeschemaid, isdirected, firstnodeid, firstedgeid,
+				expectednodes, expectededges, false);
+	}
+	
+	/**
+	 * Create a materializer adding to the given graph
+	 * 
+	 * @param graph Graph to add to, containing the node and edge schemas
+	 * @param nodeschemaid Schema ID of the nodes
+	 * @param edgeschemaid Schema ID of the edges
+	 * @param isdirected If true, edges are added as directed edges.
+	 * Otherwise, edges are added as undirected edges.
+	 * @param firstnodeid Id of the node with index 0
+	 * @param firstedgeid Id of the first edge added
+	 * @param expectednodes Expected number of nodes
+	 * @param expectededges Expected number of edges
+	 * @param edgesunique If true, the caller guarantees that each pair of nodes
+	 * is only given once, so undirected edges are added without checking
+	 * whether an edge between their nodes was already added
+	 */
+	public GraphMaterializer(Graph graph, String nodeschemaid, String edgeschemaid,
+			boolean isdirected, int firstnodeid, int firstedgeid,
+			int expectednodes, int expectededges, boolean edgesunique) {
+		this.graph = graph;
+		this.gid = (GraphID) graph.getID();
+		this.nodeschemaid = nodeschemaid;
+		this.edgeschemaid = edgeschemaid;
+		this.isdirected = isdirected;
+		this.nodeid = firstnodeid;
+		this.edgeid = firstedgeid;
+		this.nodes = new Node[Math.max(expectednodes, 16)];
+		if(!isdirected && !edgesunique) {
+			this.undirectededges = new LongHashSet(Math.max(expectededges, 16));
+		}
+	}
+	
+	/**
+	 * Add nodes, with the next node indices and ids
+	 * 
+	 * @param count Number of nodes to add
+	 */
+	public void addNodes(int count) {
+		if(numnodes + count > nodes.length) {
+			nodes = Arrays.copyOf(nodes, Math.max(numnodes + count, nodes.length + (nodes.length >> 1)));
+		}
+		
+		for(int i=0; i<count; i++) {
+			nodes[numnodes++] = graph.addNode(this.createID(nodeschemaid, nodeid++));
+		}
+	}
+	
+	/**
+	 * Add an edge between the nodes with the given indices
+	 * 
+	 * @param source Index of source node
+	 * @param target Index of target node
+	 * @return True if the edge was added, and false if undirected and
+	 * an edge between the nodes was already added
+	 */
+	public boolean addEdge(int source, int target) {
+		if(source<0 || source>=numnodes || target<0 || target>=numnodes) {
+			throw new InvalidStateException("Invalid edge: "+source+"->"+target
+					+" with "+numnodes+" nodes");
+		}
+		
+		GraphItemID id = this.createID(edgeschemaid, edgeid);
+		if(isdirected) {
+			graph.addDirectedEdge(id, nodes[source], nodes[target]);
+		} else if(undirectededges == null
+				|| undirectededges.add(LongHashSet.undirectedKey(source, target))) {
+			graph.addUndirectedEdge(id, nodes[source], nodes[target]);
+		} else {
+			return false;
+		}
+		
+		edgeid++;
+		
+		return true;
+	}
+	
+	/**
+	 * Add the nodes of the adjacency which were not already added,
+	 * and all the edges of the adjacency in order
+	 * 
+	 * @param adj Adjacency, which must keep its edges
+	 */
+	public void addAdjacency(IntAdjacency adj) {
+		this.addNodes(adj.numNodes() - numnodes);
+		
+		int numadjedges = adj.numEdges();
+		for(int i=0; i<numadjedges; i++) {
+			this.addEdge(adj.getSource(i), adj.getTarget(i));
+		}
+	}
+	
+	/**
+	 * @param schemaid Schema ID
+	 * @param id Object id
+	 * @return ID of the graph item
+	 */
+	private GraphItemID createID(String schemaid, int id) {
+		return new GraphItemID(gid, schemaid, Integer.toString(id));
+	}
+	
+	/**
+	 * @return Number of nodes added
+	 */
+	public int numNodes() {
+		return numnodes;
+	}
+	
+	/**
+	 * @return Id of the next node added
+	 */
+	public int getNextNodeID() {
+		return nodeid;
+	}
+	
+	/**
+	 * @return Id of the next edge added
+	 */
+	public int getNextEdgeID() {
+		return edgeid;
+	}
+}
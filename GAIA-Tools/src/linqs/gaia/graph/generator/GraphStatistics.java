@@ -0,0 +1,667 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import linqs.gaia.exception.InvalidStateException;
+
+/**
+ * Statistics of a generated graph computed from its edges, given as node indices,
+ * without creating a {@link linqs.gaia.graph.Graph}.
+ * <p>
+ * The edges are added using {@link #addEdge(int, int)} and {@link #compute(int, int, int, long)}
+ * then builds a sorted neighbor list for every node, ignoring edge directions,
+ * duplicate edges and self loops, and computes in parallel:
+ * <UL>
+ * <LI> The exact degree distribution, where the degree of a node is its number of neighbors,
+ * and, for directed graphs, the exact in-degree and out-degree distributions
+ * counting every edge added.
+ * <LI> The average clustering coefficient, estimated by picking random nodes
+ * and checking whether a random pair of their neighbors are neighbors.
+ * Nodes with fewer than two neighbors have a clustering coefficient of 0.
+ * <LI> The effective diameter (i.e., the smallest distance within which 90% of the
+ * pairs of connected nodes are, interpolated between integer distances as in
+ * Leskovec, J., Kleinberg, J., and Faloutsos, C. 2007. Graph evolution: Densification
+ * and shrinking diameters), estimated using a breadth first search from random nodes.
+ * </UL>
+ * The random nodes are picked using random number streams derived from the seed,
+ * so the statistics depend on the seed but not the number of threads.
+ * The neighbor lists use two ints per edge, in addition to the two ints per edge
+ * used to store the edges, and each breadth first search thread uses two ints per node.
+ */
+public class GraphStatistics {
+	private static final double EFFECTIVE_DIAMETER_QUANTILE = 0.9;
+	private static final long CLUSTERING_STREAM = 0;
+	private static final long DIAMETER_STREAM = 1;
+	private static final int MAX_EDGES = Integer.MAX_VALUE - 8;
+	
+	private final int numnodes;
+	private final boolean isdirected;
+	private int numedges = 0;
+	private int[] sources;
+	private int[] targets;
+	
+	// Sorted neighbors of node n are neighbors[offsets[n]] to neighbors[offsets[n]+degrees[n]-1]
+	private int[] offsets;
+	private int[] degrees;
+	private int[] neighbors;
+	
+	private long[] degreecounts;
+	private long[] outdegreecounts;
+	private long[] indegreecounts;
+	private long numneighborpairs = 0;
+	private int numselfloops = 0;
+	private int numclusteringsamples = 0;
+	private double clustering = 0;
+	private int numbfssources = 0;
+	private long[] distancecounts;
+	
+	/**
+	 * Create statistics for a graph with the given number of nodes
+	 * 
+	 * @param numnodes Number of nodes, with indices from 0 to numnodes-1
+	 * @param isdirected If true, the in-degree and out-degree distributions are also computed
+	 * @param expectededges Expected number of edges added using {@link #addEdge(int, int)}.
+	 * Edge arrays of this size are allocated up front, so it should be the exact number
+	 * of edges when known.  It is clamped to the largest number of edges supported.
+	 */
+	public GraphStatistics(int numnodes, boolean isdirected, long expectededges) {
+		this.numnodes = numnodes;
+		this.isdirected = isdirected;
+		this.sources = new int[(int) Math.max(Math.min(expectededges, MAX_EDGES), 16)];
+		this.targets = new int[this.sources.length];
+	}
+	
+	/**
+	 * Create statistics for the graph in an adjacency
+	 * 
+	 * @param adj Adjacency
+	 * @param isdirected If true, the in-degree and out-degree distributions are also computed
+	 * @return Statistics, with the edges of the adjacency added
+	 */
+	public static GraphStatistics fromAdjacency(IntAdjacency adj, boolean isdirected) {
+		GraphStatistics stats = new GraphStatistics(adj.numNodes(), isdirected, adj.numEdges());
+		for(int n=0; n<adj.numNodes(); n++) {
+			for(int i=0; i<adj.outDegree(n); i++) {
+				stats.addEdge(n, adj.getOut(n, i));
+			}
+		}
+		
+		return stats;
+	}
+	
+	/**
+	 * Add an edge
+	 * 
+	 * @param source Index of source node
+	 * @param target Index of target node
+	 */
+	public void addEdge(int source, int target) {
+		if(source<0 || source>=numnodes || target<0 || target>=numnodes) {
+			throw new InvalidStateException("Invalid edge: "+source+"->"+target
+					+" with "+numnodes+" nodes");
+		}
+		
+		if(numedges == sources.length) {
+			int newsize = (int) Math.min(MAX_EDGES, (long) numedges + (numedges >> 1) + 1);
+			if(newsize <= numedges) {
+				throw new InvalidStateException("Too many edges: "+numedges);
+			}
+			
+			sources = Arrays.copyOf(sources, newsize);
+			targets = Arrays.copyOf(targets, newsize);
+		}
+		
+		sources[numedges] = source;
+		targets[numedges] = target;
+		numedges++;
+	}
+	
+	/**
+	 * Compute the statistics of the edges added
+	 * 
+	 * @param numthreads Number of threads to use
+	 * @param numclusteringsamples Number of random nodes used to estimate the clustering coefficient
+	 * @param numbfssources Number of random nodes to start a breadth first search from
+	 * to estimate the effective diameter
+	 * @param seed Random generator seed
+	 */
+	public void compute(int numthreads, int numclusteringsamples, int numbfssources, long seed) {
+		this.numclusteringsamples = numclusteringsamples;
+		this.numbfssources = numbfssources;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(numthreads);
+		try {
+			this.buildNeighbors(executor, numthreads);
+			
+			degreecounts = this.countValues(executor, numthreads, degrees);
+			if(isdirected) {
+				int[] outdegrees = new int[numnodes];
+				int[] indegrees = new int[numnodes];
+				for(int e=0; e<numedges; e++) {
+					outdegrees[sources[e]]++;
+					indegrees[targets[e]]++;
+				}
+				
+				outdegreecounts = this.countValues(executor, numthreads, outdegrees);
+				indegreecounts = this.countValues(executor, numthreads, indegrees);
+			}
+			
+			this.estimateClustering(executor, numthreads, seed);
+			this.estimateDistances(executor, numthreads, seed);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Build the sorted neighbor list of every node
+	 */
+	private void buildNeighbors(ExecutorService executor, int numthreads) {
+		offsets = new int[numnodes+1];
+		degrees = new int[numnodes];
+		numselfloops = 0;
+		for(int e=0; e<numedges; e++) {
+			if(sources[e] == targets[e]) {
+				numselfloops++;
+			} else {
+				degrees[sources[e]]++;
+				degrees[targets[e]]++;
+			}
+		}
+		
+		long numentries = 0;
+		for(int n=0; n<numnodes; n++) {
+			offsets[n] = (int) numentries;
+			numentries += degrees[n];
+			if(numentries > Integer.MAX_VALUE - 8) {
+				throw new InvalidStateException("Too many edges for neighbor lists: "+numedges);
+			}
+		}
+		
+		offsets[numnodes] = (int) numentries;
+		neighbors = new int[(int) numentries];
+		Arrays.fill(degrees, 0);
+		for(int e=0; e<numedges; e++) {
+			int s = sources[e];
+			int t = targets[e];
+			if(s != t) {
+				neighbors[offsets[s]+degrees[s]++] = t;
+				neighbors[offsets[t]+degrees[t]++] = s;
+			}
+		}
+		
+		// Sort the neighbors of each node and remove duplicates
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for(int w=0; w<numthreads; w++) {
+			tasks.add(new NeighborSorter((int) ((long) numnodes*w/numthreads),
+					(int) ((long) numnodes*(w+1)/numthreads)));
+		}
+		
+		run(executor, tasks);
+		
+		numneighborpairs = 0;
+		for(int n=0; n<numnodes; n++) {
+			numneighborpairs += degrees[n];
+		}
+		
+		numneighborpairs /= 2;
+	}
+	
+	/**
+	 * Count the number of times each value occurs
+	 * 
+	 * @return Array with the number of times each value, from 0 to the largest value, occurs
+	 */
+	private long[] countValues(ExecutorService executor, int numthreads, int[] values) {
+		int max = 0;
+		for(int v:values) {
+			max = Math.max(max, v);
+		}
+		
+		long[][] partcounts = new long[numthreads][max+1];
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for(int w=0; w<numthreads; w++) {
+			tasks.add(new ValueCounter(values, (int) ((long) values.length*w/numthreads),
+					(int) ((long) values.length*(w+1)/numthreads), partcounts[w]));
+		}
+		
+		run(executor, tasks);
+		
+		long[] counts = new long[max+1];
+		for(long[] part:partcounts) {
+			for(int v=0; v<=max; v++) {
+				counts[v] += part[v];
+			}
+		}
+		
+		return counts;
+	}
+	
+	/**
+	 * Estimate the average clustering coefficient
+	 */
+	private void estimateClustering(ExecutorService executor, int numthreads, long seed) {
+		clustering = 0;
+		if(numclusteringsamples <= 0 || numnodes == 0) {
+			return;
+		}
+		
+		long streamseed = SeedUtils.deriveSeed(seed, CLUSTERING_STREAM);
+		List<ClusteringWorker> workers = new ArrayList<ClusteringWorker>();
+		for(int w=0; w<numthreads; w++) {
+			workers.add(new ClusteringWorker(streamseed, (int) ((long) numclusteringsamples*w/numthreads),
+					(int) ((long) numclusteringsamples*(w+1)/numthreads)));
+		}
+		
+		run(executor, new ArrayList<Callable<Object>>(workers));
+		
+		long numclosed = 0;
+		for(ClusteringWorker worker:workers) {
+			numclosed += worker.numclosed;
+		}
+		
+		clustering = (double) numclosed/numclusteringsamples;
+	}
+	
+	/**
+	 * Count the number of nodes at each distance from random nodes
+	 */
+	private void estimateDistances(ExecutorService executor, int numthreads, long seed) {
+		distancecounts = new long[1];
+		if(numbfssources <= 0 || numnodes == 0) {
+			return;
+		}
+		
+		// Each thread uses two ints per node
+		int numworkers = Math.min(numthreads, numbfssources);
+		long streamseed = SeedUtils.deriveSeed(seed, DIAMETER_STREAM);
+		List<DistanceWorker> workers = new ArrayList<DistanceWorker>();
+		for(int w=0; w<numworkers; w++) {
+			workers.add(new DistanceWorker(streamseed, (int) ((long) numbfssources*w/numworkers),
+					(int) ((long) numbfssources*(w+1)/numworkers)));
+		}
+		
+		run(executor, new ArrayList<Callable<Object>>(workers));
+		
+		int maxlength = 1;
+		for(DistanceWorker worker:workers) {
+			maxlength = Math.max(maxlength, worker.counts.length);
+		}
+		
+		distancecounts = new long[maxlength];
+		for(DistanceWorker worker:workers) {
+			for(int d=0; d<worker.counts.length; d++) {
+				distancecounts[d] += worker.counts[d];
+			}
+		}
+		
+		int length = distancecounts.length;
+		while(length > 1 && distancecounts[length-1] == 0) {
+			length--;
+		}
+		
+		distancecounts = Arrays.copyOf(distancecounts, length);
+	}
+	
+	/**
+	 * Check whether two nodes are neighbors by binary search
+	 * in the neighbors of the node with fewer neighbors
+	 */
+	private boolean areNeighbors(int a, int b) {
+		if(degrees[a] > degrees[b]) {
+			int tmp = a;
+			a = b;
+			b = tmp;
+		}
+		
+		return Arrays.binarySearch(neighbors, offsets[a], offsets[a]+degrees[a], b) >= 0;
+	}
+	
+	private static int pickIndex(SplitMixEngine rand, int size) {
+		return Math.min((int) (rand.nextDouble()*size), size-1);
+	}
+	
+	private static void run(ExecutorService executor, List<Callable<Object>> tasks) {
+		try {
+			List<Future<Object>> futures = executor.invokeAll(tasks);
+			for(Future<Object> f:futures) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
+	/**
+	 * @return Number of nodes
+	 */
+	public int getNumNodes() {
+		return numnodes;
+	}
+	
+	/**
+	 * @return Number of edges added
+	 */
+	public int getNumEdges() {
+		return numedges;
+	}
+	
+	/**
+	 * @return Number of pairs of neighboring nodes (i.e., undirected edges
+	 * without duplicates and self loops)
+	 */
+	public long getNumNeighborPairs() {
+		return numneighborpairs;
+	}
+	
+	/**
+	 * @return Number of edges added whose source and target are the same node
+	 */
+	public int getNumSelfLoops() {
+		return numselfloops;
+	}
+	
+	/**
+	 * @return Array with the number of nodes with each number of neighbors,
+	 * from 0 to the largest number of neighbors
+	 */
+	public long[] getDegreeCounts() {
+		return degreecounts;
+	}
+	
+	/**
+	 * @return Array with the number of nodes with each out-degree, from 0 to the largest
+	 * out-degree, or null if the graph is not directed
+	 */
+	public long[] getOutDegreeCounts() {
+		return outdegreecounts;
+	}
+	
+	/**
+	 * @return Array with the number of nodes with each in-degree, from 0 to the largest
+	 * in-degree, or null if the graph is not directed
+	 */
+	public long[] getInDegreeCounts() {
+		return indegreecounts;
+	}
+	
+	/**
+	 * @return Estimated average clustering coefficient
+	 */
+	public double getClusteringCoefficient() {
+		return clustering;
+	}
+	
+	/**
+	 * @return Array with the number of nodes at each distance, from 0 to the largest
+	 * distance found, from the sources of the breadth first searches
+	 */
+	public long[] getDistanceCounts() {
+		return distancecounts;
+	}
+	
+	/**
+	 * @return Largest distance found by the breadth first searches,
+	 * which is a lower bound of the diameter
+	 */
+	public int getSampledDiameter() {
+		return distancecounts.length-1;
+	}
+	
+	/**
+	 * @return Estimated effective diameter, or 0 if no pair of connected nodes was found
+	 */
+	public double getEffectiveDiameter() {
+		long numpairs = 0;
+		for(int d=1; d<distancecounts.length; d++) {
+			numpairs += distancecounts[d];
+		}
+		
+		if(numpairs == 0) {
+			return 0;
+		}
+		
+		double threshold = EFFECTIVE_DIAMETER_QUANTILE*numpairs;
+		long cumulative = 0;
+		for(int d=1; d<distancecounts.length; d++) {
+			if(cumulative+distancecounts[d] >= threshold) {
+				return d-1+(threshold-cumulative)/distancecounts[d];
+			}
+			
+			cumulative += distancecounts[d];
+		}
+		
+		return distancecounts.length-1;
+	}
+	
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Nodes: "+numnodes+" Edges: "+numedges
+				+" Neighbor pairs: "+numneighborpairs+" Self loops: "+numselfloops);
+		sb.append("\nDegree: "+summarize(degreecounts));
+		if(isdirected) {
+			sb.append("\nOut-degree: "+summarize(outdegreecounts));
+			sb.append("\nIn-degree: "+summarize(indegreecounts));
+		}
+		
+		sb.append("\nClustering coefficient: "+clustering
+				+" (samples="+numclusteringsamples+")");
+		sb.append("\nEffective diameter: "+this.getEffectiveDiameter()
+				+" Sampled diameter: "+this.getSampledDiameter()
+				+" (sources="+numbfssources+")");
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Summarize a distribution with its mean, median, 90th and 99th percentiles and maximum
+	 */
+	private static String summarize(long[] counts) {
+		long total = 0;
+		double sum = 0;
+		for(int v=0; v<counts.length; v++) {
+			total += counts[v];
+			sum += (double) v*counts[v];
+		}
+		
+		if(total == 0) {
+			return "none";
+		}
+		
+		return "mean="+(sum/total)+" median="+quantile(counts, total, .5)
+			+" p90="+quantile(counts, total, .9)+" p99="+quantile(counts, total, .99)
+			+" max="+(counts.length-1)+" zero="+counts[0];
+	}
+	
+	private static int quantile(long[] counts, long total, double q) {
+		long cumulative = 0;
+		for(int v=0; v<counts.length; v++) {
+			cumulative += counts[v];
+			if(cumulative >= q*total) {
+				return v;
+			}
+		}
+		
+		return counts.length-1;
+	}
+	
+	/**
+	 * Task which sorts the neighbors of a range of nodes and removes duplicates
+	 */
+	private class NeighborSorter implements Callable<Object> {
+		private int first;
+		private int last;
+		
+		public NeighborSorter(int first, int last) {
+			this.first = first;
+			this.last = last;
+		}
+		
+		public Object call() {
+			for(int n=first; n<last; n++) {
+				int start = offsets[n];
+				int end = start+degrees[n];
+				Arrays.sort(neighbors, start, end);
+				int numunique = 0;
+				for(int i=start; i<end; i++) {
+					if(numunique == 0 || neighbors[i] != neighbors[start+numunique-1]) {
+						neighbors[start+numunique++] = neighbors[i];
+					}
+				}
+				
+				degrees[n] = numunique;
+			}
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * Task which counts the number of times each value occurs in a range of an array
+	 */
+	private static class ValueCounter implements Callable<Object> {
+		private int[] values;
+		private int first;
+		private int last;
+		private long[] counts;
+		
+		public ValueCounter(int[] values, int first, int last, long[] counts) {
+			this.values = values;
+			this.first = first;
+			this.last = last;
+			this.counts = counts;
+		}
+		
+		public Object call() {
+			for(int i=first; i<last; i++) {
+				counts[values[i]]++;
+			}
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * Task which checks whether a random pair of neighbors of a random node
+	 * are neighbors, for a range of samples
+	 */
+	private class ClusteringWorker implements Callable<Object> {
+		private long streamseed;
+		private int first;
+		private int last;
+		private long numclosed = 0;
+		
+		public ClusteringWorker(long streamseed, int first, int last) {
+			this.streamseed = streamseed;
+			this.first = first;
+			this.last = last;
+		}
+		
+		public Object call() {
+			SplitMixEngine rand = new SplitMixEngine(0);
+			for(int i=first; i<last; i++) {
+				rand.setSeed(SeedUtils.deriveSeed(streamseed, i));
+				int n = pickIndex(rand, numnodes);
+				int d = degrees[n];
+				if(d < 2) {
+					continue;
+				}
+				
+				int a = pickIndex(rand, d);
+				int b = pickIndex(rand, d-1);
+				if(b >= a) {
+					b++;
+				}
+				
+				if(areNeighbors(neighbors[offsets[n]+a], neighbors[offsets[n]+b])) {
+					numclosed++;
+				}
+			}
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * Task which counts the number of nodes at each distance from a random node,
+	 * using a breadth first search, for a range of searches
+	 */
+	private class DistanceWorker implements Callable<Object> {
+		private long streamseed;
+		private int first;
+		private int last;
+		private long[] counts = new long[16];
+		
+		public DistanceWorker(long streamseed, int first, int last) {
+			this.streamseed = streamseed;
+			this.first = first;
+			this.last = last;
+		}
+		
+		public Object call() {
+			SplitMixEngine rand = new SplitMixEngine(0);
+			int[] distance = new int[numnodes];
+			Arrays.fill(distance, -1);
+			int[] queue = new int[numnodes];
+			for(int i=first; i<last; i++) {
+				rand.setSeed(SeedUtils.deriveSeed(streamseed, i));
+				int source = pickIndex(rand, numnodes);
+				
+				int head = 0;
+				int tail = 0;
+				queue[tail++] = source;
+				distance[source] = 0;
+				while(head < tail) {
+					int n = queue[head++];
+					int d = distance[n];
+					if(d >= counts.length) {
+						counts = Arrays.copyOf(counts, 2*counts.length);
+					}
+					
+					counts[d]++;
+					for(int j=offsets[n], end=offsets[n]+degrees[n]; j<end; j++) {
+						int f = neighbors[j];
+						if(distance[f] < 0) {
+							distance[f] = d+1;
+							queue[tail++] = f;
+						}
+					}
+				}
+				
+				// Only reset the nodes reached
+				for(int j=0; j<tail; j++) {
+					distance[queue[j]] = -1;
+				}
+			}
+			
+			return null;
+		}
+	}
+}
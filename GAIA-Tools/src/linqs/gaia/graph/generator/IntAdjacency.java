@@ -0,0 +1,240 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import linqs.gaia.exception.InvalidStateException;
+
+/**
+ * Compact directed adjacency structure for use by generators.
+ * Nodes are numbered from 0 to (number of nodes)-1 in the order they are added
+ * and edges are numbered from 0 to (number of edges)-1 in the order they are added.
+ * For every node, the targets of its outgoing edges and the sources of its
+ * incoming edges are stored in growable int arrays, in the order the edges were added.
+ * <p>
+ * This allows generators to perform their graph traversals without creating
+ * a {@link linqs.gaia.graph.Graph}, and its corresponding node and edge objects,
+ * until the generation is complete.
+ */
+public class IntAdjacency {
+	private static final int INITIAL_ROW_SIZE = 2;
+	
+	private int numnodes = 0;
+	private int[][] out;
+	private int[] outdeg;
+	private int[][] in;
+	private int[] indeg;
+	
+	private int numedges = 0;
+	private boolean keepedges;
+	private int[] sources;
+	private int[] targets;
+	
+	/**
+	 * Create an empty adjacency structure
+	 * 
+	 * @param expectednodes Expected number of nodes
+	 * @param expectededges Expected number of edges
+	 */
+	public IntAdjacency(int expectednodes, int expectededges) {
+		this(expectednodes, expectededges, true);
+	}
+	
+	/**
+	 * Create an empty adjacency structure
+	 * 
+	 * @param expectednodes Expected number of nodes
+	 * @param expectededges Expected number of edges
+	 * @param keepedges If false, only the adjacency of the nodes is kept
+	 * and the source and target of an edge cannot be retrieved by its index.
+	 * This saves memory when the edges are written out as they are added.
+	 */
+	public IntAdjacency(int expectednodes, int expectededges, boolean keepedges) {
+		expectednodes = Math.max(expectednodes, 1);
+		expectededges = Math.max(expectededges, 1);
+		this.keepedges = keepedges;
+		
+		out = new int[expectednodes][];
+		outdeg = new int[expectednodes];
+		in = new int[expectednodes][];
+		indeg = new int[expectednodes];
+		
+		if(keepedges) {
+			sources = new int[expectededges];
+			targets = new int[expectededges];
+		}
+	}
+	
+	/**
+	 * Add a new node
+	 * 
+	 * @return Index of the new node
+	 */
+	public int addNode() {
+		if(numnodes == out.length) {
+			int newsize = grow(numnodes);
+			out = copyOf(out, newsize);
+			outdeg = copyOf(outdeg, newsize);
+			in = copyOf(in, newsize);
+			indeg = copyOf(indeg, newsize);
+		}
+		
+		return numnodes++;
+	}
+	
+	/**
+	 * Add a new directed edge
+	 * 
+	 * @param source Index of source node
+	 * @param target Index of target node
+	 * @return Index of the new edge
+	 */
+	public int addEdge(int source, int target) {
+		if(source<0 || source>=numnodes || target<0 || target>=numnodes) {
+			throw new InvalidStateException("Invalid edge: "+source+"->"+target
+					+" with "+numnodes+" nodes");
+		}
+		
+		if(keepedges) {
+			if(numedges == sources.length) {
+				int newsize = grow(numedges);
+				sources = copyOf(sources, newsize);
+				targets = copyOf(targets, newsize);
+			}
+			
+			sources[numedges] = source;
+			targets[numedges] = target;
+		}
+		
+		out[source] = append(out[source], outdeg[source], target);
+		outdeg[source]++;
+		in[target] = append(in[target], indeg[target], source);
+		indeg[target]++;
+		
+		return numedges++;
+	}
+	
+	/**
+	 * @return Number of nodes
+	 */
+	public int numNodes() {
+		return numnodes;
+	}
+	
+	/**
+	 * @return Number of edges
+	 */
+	public int numEdges() {
+		return numedges;
+	}
+	
+	/**
+	 * @param node Node index
+	 * @return Number of edges where the node is the source
+	 */
+	public int outDegree(int node) {
+		return outdeg[node];
+	}
+	
+	/**
+	 * @param node Node index
+	 * @return Number of edges where the node is the target
+	 */
+	public int inDegree(int node) {
+		return indeg[node];
+	}
+	
+	/**
+	 * @param node Node index
+	 * @param i Index, from 0 to outDegree(node)-1, of the outgoing edge
+	 * @return Target of the i-th outgoing edge of the node
+	 */
+	public int getOut(int node, int i) {
+		return out[node][i];
+	}
+	
+	/**
+	 * @param node Node index
+	 * @param i Index, from 0 to inDegree(node)-1, of the incoming edge
+	 * @return Source of the i-th incoming edge of the node
+	 */
+	public int getIn(int node, int i) {
+		return in[node][i];
+	}
+	
+	/**
+	 * @param edge Edge index
+	 * @return Source node of the edge
+	 */
+	public int getSource(int edge) {
+		if(!keepedges) {
+			throw new InvalidStateException("Edges are not kept in this adjacency");
+		}
+		
+		return sources[edge];
+	}
+	
+	/**
+	 * @param edge Edge index
+	 * @return Target node of the edge
+	 */
+	public int getTarget(int edge) {
+		if(!keepedges) {
+			throw new InvalidStateException("Edges are not kept in this adjacency");
+		}
+		
+		return targets[edge];
+	}
+	
+	private static int[] append(int[] row, int size, int value) {
+		if(row == null) {
+			row = new int[INITIAL_ROW_SIZE];
+		} else if(size == row.length) {
+			row = copyOf(row, grow(size));
+		}
+		
+		row[size] = value;
+		
+		return row;
+	}
+	
+	private static int grow(int size) {
+		int newsize = size + (size >> 1) + 1;
+		if(newsize < 0) {
+			// Handle overflow
+			newsize = Integer.MAX_VALUE - 8;
+			if(newsize <= size) {
+				throw new InvalidStateException("Adjacency array too large: "+size);
+			}
+		}
+		
+		return newsize;
+	}
+	
+	private static int[] copyOf(int[] array, int newsize) {
+		int[] newarray = new int[newsize];
+		System.arraycopy(array, 0, newarray, 0, Math.min(array.length, newsize));
+		return newarray;
+	}
+	
+	private static int[][] copyOf(int[][] array, int newsize) {
+		int[][] newarray = new int[newsize][];
+		System.arraycopy(array, 0, newarray, 0, Math.min(array.length, newsize));
+		return newarray;
+	}
+}
@@ -0,0 +1,178 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import linqs.gaia.exception.InvalidStateException;
+
+/**
+ * Calendar queue of ints scheduled for integer days.
+ * The ints scheduled for each day are kept in a growable int array bucket,
+ * in the order they were added, and the buckets of the days from the first day
+ * of the queue onward are kept in a ring which grows as needed.
+ * Adding an int and getting the ints of a day take constant time,
+ * without hashing or boxing the days.
+ * <p>
+ * This is used by generators to schedule node indices to be processed on later days.
+ */
+public class IntCalendarQueue {
+	private static final int INITIAL_BUCKET_SIZE = 4;
+	
+	private int[][] buckets;
+	private int[] sizes;
+	private int head = 0;
+	private int firstday;
+	private long numscheduled = 0;
+	
+	/**
+	 * Create an empty queue
+	 * 
+	 * @param firstday First day ints can be scheduled for
+	 * @param expecteddays Expected number of days, from the first day,
+	 * for which ints are scheduled at any time
+	 */
+	public IntCalendarQueue(int firstday, int expecteddays) {
+		int numbuckets = 16;
+		while(numbuckets < expecteddays && numbuckets < (1<<30)) {
+			numbuckets <<= 1;
+		}
+		
+		this.firstday = firstday;
+		buckets = new int[numbuckets][];
+		sizes = new int[numbuckets];
+	}
+	
+	/**
+	 * @return First day ints can be scheduled for
+	 */
+	public int getFirstDay() {
+		return firstday;
+	}
+	
+	/**
+	 * Schedule an int for a day
+	 * 
+	 * @param day Day, which must not be before the first day of the queue
+	 * @param value Int to schedule
+	 */
+	public void add(int day, int value) {
+		if(day < firstday) {
+			throw new InvalidStateException("Cannot schedule for day "+day
+					+" before first day "+firstday);
+		}
+		
+		long offset = (long) day - firstday;
+		if(offset >= buckets.length) {
+			this.grow(offset);
+		}
+		
+		int b = this.bucket(day);
+		int[] bucket = buckets[b];
+		if(bucket == null) {
+			bucket = new int[INITIAL_BUCKET_SIZE];
+			buckets[b] = bucket;
+		} else if(sizes[b] == bucket.length) {
+			int[] newbucket = new int[bucket.length + (bucket.length >> 1)];
+			System.arraycopy(bucket, 0, newbucket, 0, bucket.length);
+			bucket = newbucket;
+			buckets[b] = bucket;
+		}
+		
+		bucket[sizes[b]++] = value;
+		numscheduled++;
+	}
+	
+	/**
+	 * @param day Day
+	 * @return Number of ints scheduled for the day
+	 */
+	public int size(int day) {
+		if(day < firstday || (long) day - firstday >= buckets.length) {
+			return 0;
+		}
+		
+		return sizes[this.bucket(day)];
+	}
+	
+	/**
+	 * @param day Day
+	 * @param i Index, from 0 to size(day)-1, of the int in the order scheduled
+	 * @return The i-th int scheduled for the day
+	 */
+	public int get(int day, int i) {
+		return buckets[this.bucket(day)][i];
+	}
+	
+	/**
+	 * Remove all the ints scheduled for a day
+	 * 
+	 * @param day Day
+	 */
+	public void clear(int day) {
+		if(this.size(day) != 0) {
+			int b = this.bucket(day);
+			numscheduled -= sizes[b];
+			sizes[b] = 0;
+		}
+	}
+	
+	/**
+	 * Remove the ints scheduled for the first day of the queue
+	 * and make the next day the first day
+	 */
+	public void advance() {
+		numscheduled -= sizes[head];
+		sizes[head] = 0;
+		buckets[head] = null;
+		head = (head+1) & (buckets.length-1);
+		firstday++;
+	}
+	
+	/**
+	 * @return Total number of ints scheduled
+	 */
+	public long numScheduled() {
+		return numscheduled;
+	}
+	
+	private int bucket(int day) {
+		return (head + (day - firstday)) & (buckets.length-1);
+	}
+	
+	private void grow(long offset) {
+		int numbuckets = buckets.length;
+		while(numbuckets <= offset) {
+			numbuckets <<= 1;
+			if(numbuckets <= 0) {
+				throw new InvalidStateException("Calendar queue too large: "+offset+" days");
+			}
+		}
+		
+		int[][] newbuckets = new int[numbuckets][];
+		int[] newsizes = new int[numbuckets];
+		for(int i=0; i<buckets.length; i++) {
+			int b = (head+i) & (buckets.length-1);
+			newbuckets[i] = buckets[b];
+			newsizes[i] = sizes[b];
+		}
+		
+		buckets = newbuckets;
+		sizes = newsizes;
+		head = 0;
+	}
+}
@@ -0,0 +1,184 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import java.util.Arrays;
+
+import linqs.gaia.exception.InvalidStateException;
+
+/**
+ * Storage for many growable lists of ints, such as the friend lists
+ * of the nodes of a generator, in large int pages instead of one array per list.
+ * <p>
+ * Each list is stored in a block whose size is a power of two, at least 2,
+ * and is moved to a block twice the size when full.  Blocks are identified
+ * by a long address (page index in the upper 32 bits and offset in the lower 32 bits).
+ * Freed blocks are kept in a free list per block size and are reused
+ * by later lists.  Blocks smaller than a page are allocated consecutively
+ * within pages, so the lists of nodes added at about the same time are
+ * close together in memory.  Larger blocks get a page of their own.
+ * <p>
+ * The pool does not store the size of the lists.  The caller keeps the size
+ * of each list, from which the block size is known (see {@link #blockSize(int)}).
+ */
+public class IntListPool {
+	private static final int PAGE_BITS = 16;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int MIN_BLOCK_SIZE = 2;
+	
+	private int[][] pages = new int[16][];
+	private int numpages = 0;
+	
+	// Page blocks smaller than a page are allocated from, and the next free offset
+	private int currentpage = -1;
+	private int currentoffset = PAGE_SIZE;
+	
+	// Free blocks for each block size class (i.e., block size 2^k)
+	private long[][] freeblocks = new long[32][];
+	private int[] numfreeblocks = new int[32];
+	
+	/**
+	 * Size of the block storing a list of the given size
+	 * 
+	 * @param listsize Size of the list
+	 * @return Size of the block
+	 */
+	public static int blockSize(int listsize) {
+		if(listsize <= MIN_BLOCK_SIZE) {
+			return MIN_BLOCK_SIZE;
+		}
+		
+		return Integer.highestOneBit(listsize-1) << 1;
+	}
+	
+	/**
+	 * Append an int to a list
+	 * 
+	 * @param address Address of the block of the list.  Ignored if the list is empty.
+	 * @param listsize Size of the list before appending
+	 * @param value Int to append
+	 * @return Address of the block of the list after appending,
+	 * which differs from the given address if the list was moved
+	 */
+	public long append(long address, int listsize, int value) {
+		if(listsize == 0) {
+			address = this.allocate(MIN_BLOCK_SIZE);
+		} else if(listsize >= MIN_BLOCK_SIZE && Integer.bitCount(listsize) == 1) {
+			// Block is full
+			if(listsize >= (1<<30)) {
+				throw new InvalidStateException("List too large: "+listsize);
+			}
+			
+			long newaddress = this.allocate(2*listsize);
+			System.arraycopy(pages[page(address)], offset(address),
+					pages[page(newaddress)], offset(newaddress), listsize);
+			this.free(address, listsize);
+			address = newaddress;
+		}
+		
+		pages[page(address)][offset(address)+listsize] = value;
+		
+		return address;
+	}
+	
+	/**
+	 * @param address Address of the block of the list
+	 * @param i Index of the int in the list
+	 * @return The i-th int of the list
+	 */
+	public int get(long address, int i) {
+		return pages[page(address)][offset(address)+i];
+	}
+	
+	/**
+	 * Free the block of a list
+	 * 
+	 * @param address Address of the block of the list
+	 * @param listsize Size of the list
+	 */
+	public void free(long address, int listsize) {
+		if(listsize == 0) {
+			return;
+		}
+		
+		int k = Integer.numberOfTrailingZeros(blockSize(listsize));
+		if(freeblocks[k] == null) {
+			freeblocks[k] = new long[16];
+		} else if(numfreeblocks[k] == freeblocks[k].length) {
+			freeblocks[k] = Arrays.copyOf(freeblocks[k], 2*freeblocks[k].length);
+		}
+		
+		freeblocks[k][numfreeblocks[k]++] = address;
+	}
+	
+	/**
+	 * @return Number of ints allocated in pages, including free blocks
+	 */
+	public long capacity() {
+		long capacity = 0;
+		for(int i=0; i<numpages; i++) {
+			capacity += pages[i].length;
+		}
+		
+		return capacity;
+	}
+	
+	private long allocate(int blocksize) {
+		int k = Integer.numberOfTrailingZeros(blocksize);
+		if(numfreeblocks[k] != 0) {
+			return freeblocks[k][--numfreeblocks[k]];
+		}
+		
+		if(blocksize >= PAGE_SIZE) {
+			return address(this.addPage(blocksize), 0);
+		}
+		
+		if(currentoffset + blocksize > PAGE_SIZE) {
+			currentpage = this.addPage(PAGE_SIZE);
+			currentoffset = 0;
+		}
+		
+		long address = address(currentpage, currentoffset);
+		currentoffset += blocksize;
+		
+		return address;
+	}
+	
+	private int addPage(int size) {
+		if(numpages == pages.length) {
+			pages = Arrays.copyOf(pages, 2*pages.length);
+		}
+		
+		pages[numpages] = new int[size];
+		
+		return numpages++;
+	}
+	
+	private static long address(int page, int offset) {
+		return ((long) page << 32) | offset;
+	}
+	
+	private static int page(long address) {
+		return (int) (address >>> 32);
+	}
+	
+	private static int offset(long address) {
+		return (int) address;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import java.util.Arrays;
+
+/**
+ * Set of non-negative ints which can be cleared in constant time.
+ * Members are marked by storing the number of the current use of the set,
+ * which is incremented whenever the set is cleared.
+ * <p>
+ * A dense set stores a mark for every int from 0 to the largest int added
+ * and is best when the ints are indices into a structure of known size.
+ * Otherwise, the ints are stored in an open addressing hash table
+ * whose size depends only on the number of ints added since the last clear.
+ */
+public class IntMarkSet {
+	private static final int MIN_TABLE_SIZE = 16;
+	
+	private final boolean dense;
+	private int[] marks;
+	private int[] keys;
+	private int mark = 1;
+	private int size = 0;
+	
+	/**
+	 * Create set
+	 * 
+	 * @param dense If true, create a dense set.  Otherwise, use hashing.
+	 * @param expectedsize For a dense set, the expected largest int plus one.
+	 * Otherwise, the expected number of ints added between clears.
+	 */
+	public IntMarkSet(boolean dense, int expectedsize) {
+		this.dense = dense;
+		if(dense) {
+			marks = new int[Math.max(expectedsize, 1)];
+		} else {
+			int tablesize = MIN_TABLE_SIZE;
+			while(tablesize < 2*expectedsize) {
+				tablesize <<= 1;
+			}
+			
+			marks = new int[tablesize];
+			keys = new int[tablesize];
+		}
+	}
+	
+	/**
+	 * Remove all ints from the set
+	 */
+	public void clear() {
+		size = 0;
+		if(mark == Integer.MAX_VALUE) {
+			// Reset marks before the mark wraps around
+			Arrays.fill(marks, 0);
+			mark = 0;
+		}
+		
+		mark++;
+	}
+	
+	/**
+	 * @param key Int to check
+	 * @return True if the int is in the set, false otherwise
+	 */
+	public boolean contains(int key) {
+		if(dense) {
+			return key < marks.length && marks[key]==mark;
+		}
+		
+		int m = marks.length-1;
+		for(int i=hash(key)&m; marks[i]==mark; i=(i+1)&m) {
+			if(keys[i]==key) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Add int to the set
+	 * 
+	 * @param key Int to add
+	 * @return True if the int was not already in the set, false otherwise
+	 */
+	public boolean add(int key) {
+		if(dense) {
+			if(key >= marks.length) {
+				marks = Arrays.copyOf(marks, Math.max(key+1, 2*marks.length));
+			}
+			
+			if(marks[key]==mark) {
+				return false;
+			}
+			
+			marks[key] = mark;
+			size++;
+			return true;
+		}
+		
+		if(2*(size+1) > marks.length) {
+			this.rehash(2*marks.length);
+		}
+		
+		int m = marks.length-1;
+		int i=hash(key)&m;
+		for(; marks[i]==mark; i=(i+1)&m) {
+			if(keys[i]==key) {
+				return false;
+			}
+		}
+		
+		marks[i] = mark;
+		keys[i] = key;
+		size++;
+		return true;
+	}
+	
+	/**
+	 * @return Number of ints in the set
+	 */
+	public int size() {
+		return size;
+	}
+	
+	private void rehash(int newsize) {
+		int[] oldmarks = marks;
+		int[] oldkeys = keys;
+		int oldmark = mark;
+		
+		marks = new int[newsize];
+		keys = new int[newsize];
+		mark = 1;
+		size = 0;
+		
+		for(int i=0; i<oldmarks.length; i++) {
+			if(oldmarks[i]==oldmark) {
+				this.add(oldkeys[i]);
+			}
+		}
+	}
+	
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,147 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import java.util.Arrays;
+
+import linqs.gaia.exception.InvalidStateException;
+
+/**
+ * Open addressing hash set of non-negative longs.
+ * Unlike a HashSet of Longs, no objects are created per member,
+ * so the set takes 16 to 32 bytes per member.
+ * <p>
+ * This is used by generators to keep track of which pairs of nodes
+ * are connected, using the key from {@link #undirectedKey(int, int)}.
+ */
+public class LongHashSet {
+	private static final int MIN_TABLE_SIZE = 16;
+	private static final long EMPTY = -1;
+	
+	private long[] keys;
+	private int size = 0;
+	
+	/**
+	 * Create set
+	 * 
+	 * @param expectedsize Expected number of longs added
+	 */
+	public LongHashSet(int expectedsize) {
+		int tablesize = MIN_TABLE_SIZE;
+		while(tablesize < 2*(long) expectedsize && tablesize < (1<<30)) {
+			tablesize <<= 1;
+		}
+		
+		keys = new long[tablesize];
+		Arrays.fill(keys, EMPTY);
+	}
+	
+	/**
+	 * Key of the unordered pair of two non-negative ints
+	 * (i.e., undirectedKey(a,b)==undirectedKey(b,a)).
+	 * 
+	 * @param a First int
+	 * @param b Second int
+	 * @return Non-negative long with the smaller int in the upper 32 bits
+	 * and the larger int in the lower 32 bits
+	 */
+	public static long undirectedKey(int a, int b) {
+		return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+	}
+	
+	/**
+	 * @param key Long to check
+	 * @return True if the long is in the set, false otherwise
+	 */
+	public boolean contains(long key) {
+		int m = keys.length-1;
+		for(int i=hash(key)&m; keys[i]!=EMPTY; i=(i+1)&m) {
+			if(keys[i]==key) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Add long to the set
+	 * 
+	 * @param key Non-negative long to add
+	 * @return True if the long was not already in the set, false otherwise
+	 */
+	public boolean add(long key) {
+		if(key < 0) {
+			throw new IllegalArgumentException("Only non-negative longs are supported: "+key);
+		}
+		
+		if(2*(size+1L) > keys.length) {
+			this.rehash(2*keys.length);
+		}
+		
+		int m = keys.length-1;
+		int i=hash(key)&m;
+		for(; keys[i]!=EMPTY; i=(i+1)&m) {
+			if(keys[i]==key) {
+				return false;
+			}
+		}
+		
+		keys[i] = key;
+		size++;
+		return true;
+	}
+	
+	/**
+	 * Remove all longs from the set
+	 */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+	
+	/**
+	 * @return Number of longs in the set
+	 */
+	public int size() {
+		return size;
+	}
+	
+	private void rehash(int newsize) {
+		if(newsize <= 0) {
+			throw new InvalidStateException("Hash set too large: "+size);
+		}
+		
+		long[] oldkeys = keys;
+		keys = new long[newsize];
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+		
+		for(int i=0; i<oldkeys.length; i++) {
+			if(oldkeys[i]!=EMPTY) {
+				this.add(oldkeys[i]);
+			}
+		}
+	}
+	
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -18,26 +18,41 @@
 */
 package linqs.gaia.graph.generator;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import linqs.gaia.configurable.BaseConfigurable;
 import linqs.gaia.exception.ConfigurationException;
+import linqs.gaia.exception.InvalidStateException;
 import linqs.gaia.feature.schema.Schema;
 import linqs.gaia.feature.schema.SchemaType;
 import linqs.gaia.graph.Graph;
 import linqs.gaia.graph.GraphUtils;
 import linqs.gaia.graph.datagraph.DataGraph;
+import linqs.gaia.graph.generator.metrics.GeneratorListener;
+import linqs.gaia.graph.generator.metrics.GeneratorMetrics;
 import linqs.gaia.identifiable.GraphID;
-import linqs.gaia.identifiable.GraphItemID;
 import linqs.gaia.log.Log;
 import linqs.gaia.util.Dynamic;
-import umontreal.iro.lecuyer.probdist.ExponentialDist;
-import umontreal.iro.lecuyer.randvar.ExponentialGen;
-import umontreal.iro.lecuyer.rng.LFSR113;
+import linqs.gaia.util.SimpleTimer;
 import cern.jet.random.engine.MersenneTwister;
 import cern.jet.random.engine.RandomEngine;
 
@@ -58,7 +73,8 @@ import cern.jet.random.engine.RandomEngine;
  * <LI> nodeschemaid-Schema ID of the nodes.  Default is menode.
  * <LI> edgeschemaid-Schema ID of the edges.  Default is meedge.
  * <LI> isdirected-If yes, the generated edges are directed.
- * They edges are undirected otherwise.  Default is yes.
+ * They edges are undirected otherwise, with one undirected edge
+ * between each pair of friends.  Default is yes.
  * <LI> nodesPerDay-Initial number of nodes to create per day.
  * Default is 10.
  * <LI> lastEvolDay-Last day of evoluation.  Default is 10.
@@ -66,6 +82,70 @@ import cern.jet.random.engine.RandomEngine;
  * <LI> alpha-Model alpha value.  Default is 0.84.
  * <LI> beta-Model beta value.  Default is 0.002.
  * <LI> seed-Random generator seed.  Default is 0.
+ * <LI> firstfriend-Method used to pick the first friend of a new node,
+ * with probability proportional to its degree.  If scan, nodes are drawn
+ * at random and their degrees summed until a random threshold is passed,
+ * which takes longer as the number of nodes and maximum degree grow.
+ * If endpoint, the node is drawn from an array containing every node once
+ * per friend it has, which takes constant time.  The array uses an additional
+ * two ints per friendship.  The generated graph differs from the one
+ * generated using scan.  Default is scan.
+ * <LI> pickfriend-Method used to pick a new friend, two hops away, for a node which wakes up.
+ * If scan, a random friend of a random friend is drawn until one which is not
+ * already a friend is found, checking friendship by scanning the friend list,
+ * and no friend is added after maxDegree*maxDegree attempts.
+ * If hashed, friendships are also stored in a {@link LongHashSet} so they are
+ * checked in constant time.  If no new friend is found after a few attempts,
+ * every friend of a friend is enumerated to pick one with the same probability
+ * as drawing it at random, and no friend is added only if there are none.
+ * This uses an additional 16 to 32 bytes per friendship and the generated graph differs
+ * from the one generated using scan.  Default is scan.
+ * <LI> sleeptime-Method used to draw the sleep times of the nodes.
+ * If rejection, each sleep time is drawn by rejection, with several calls to Math.pow
+ * and Math.log per attempt.  If table, sleep times are drawn from the same distribution
+ * using precomputed alias tables for each degree (see {@link SleepTimeSampler}).
+ * The generated graph differs from the one generated using rejection.
+ * Default is rejection.
+ * <LI> savestatefile-If specified, the state of the evolution (i.e., the nodes, their friends,
+ * the scheduled wake-ups, the random number generator and the counters) is written
+ * to this file after the last day, so that a later run can continue the evolution
+ * using loadstatefile.  Wake-ups scheduled after the last day are kept, which a run
+ * without this parameter drops, but the generated graph is the same.
+ * <LI> loadstatefile-If specified, the evolution continues from the state
+ * in this file, written by a run with savestatefile, up to lastEvolDay,
+ * which must not be before the last day of that run.  The generated graph is the same
+ * as the one generated by running the evolution from the first day, with the
+ * same parameters.  The seed, alpha, beta, lambda, firstfriend, pickfriend and sleeptime
+ * parameters must be the same as the run which wrote the state.
+ * The same file can be used for loadstatefile and savestatefile.
+ * <LI> numthreads-If specified, the new nodes and the nodes which wake up
+ * on each day are processed in parallel using this number of threads.
+ * The new nodes of a day pick their first friends based on the friendships
+ * at the start of the day, and the nodes which wake up pick their new friends
+ * based on the friendships after the new nodes of the day are added.
+ * Each node uses its own random number generator, seeded from the seed,
+ * the day and the position of the node among the nodes of the day.
+ * The picked friendships are then added in that order, skipping a friendship
+ * if the pair of nodes became friends earlier that day.  The generated graph
+ * depends on the seed but not on the number of threads, and differs from
+ * the one generated without this parameter, where each node sees the friendships
+ * added by the nodes before it.  A state saved using numthreads must be continued
+ * using numthreads, with any number of threads.
+ * <LI> listenerclass-If specified, the {@link GeneratorListener} instantiated using
+ * Dynamic.forConfigurableName (e.g., metrics:linqs.gaia.graph.generator.metrics.FileMetricsListener)
+ * is periodically given the {@link GeneratorMetrics} of the generation.
+ * The queue depth is the number of nodes which wake up on each day.
+ * <LI> reportinterval-Minimum number of seconds between reports to the listener.
+ * Default is 10.
+ * <LI> statistics-If yes, the {@link GraphStatistics} of the generated graph (i.e., degree
+ * distributions, estimated clustering coefficient and effective diameter) are computed
+ * from the friend lists and logged instead of the graph overview.  They are computed
+ * using numthreads threads, or the number of available processors if numthreads
+ * is not specified.  Default is no.
+ * <LI> clusteringsamples-Number of nodes sampled to estimate the clustering coefficient.
+ * Default is 10000.
+ * <LI> diametersources-Number of nodes to start a breadth first search from
+ * to estimate the effective diameter.  Default is 100.
  * </UL>
  * 
  * @author hossam
@@ -76,22 +156,71 @@ import cern.jet.random.engine.RandomEngine;
 public class MicroEvolution extends BaseConfigurable implements Generator {
 	
 	private RandomEngine generator;
+	private int seed;
 	private int currentDay;
 	private double alpha;
 	private double beta;
 	private double lambda;
 	private int totalLinks=0;
 	private int maxDegree=1;
-	private HashMap<Integer,ArrayList<Node>> schNodes;
+	
+	// Last day for which wake-ups are scheduled
+	private int lastScheduleDay;
+	
+	// State file of the evolution
+	private static final int STATE_MAGIC = 0x4D455354;
+	private static final int STATE_VERSION = 1;
+	
+	// Indices of the nodes scheduled to wake up on each day
+	private IntCalendarQueue schNodes;
+	
+	// Id of the first node, i.e., the id of node i is firstnodeid+i
+	private int firstnodeid = 0;
+	private GeneratorMetrics metrics = null;
+	
+	// Every node, once for each of its friends, if picking first friends by endpoint
+	private int[] endpoints = null;
+	private int numendpoints = 0;
+	
+	// All friendships, if picking friends using hashed friendships
+	private static final int MAX_FRIEND_ATTEMPTS = 32;
+	private LongHashSet friendships = null;
+	
+	// Sampler for sleep times
+	private SleepTimeSampler sleeptimes = null;
+	
+	// Workers and generators for processing each day in parallel, if specified
+	private static final int NEW_NODES = 0;
+	private static final int WAKEUPS = 1;
+	private static final int WAKEUP_SLEEPTIMES = 2;
+	private int numthreads = 0;
+	private GraphStatistics graphstatistics = null;
+	private ExecutorService executor = null;
+	private DayWorker[] workers = null;
+	private SplitMixEngine dayrand = null;
+	private SleepTimeSampler daysleeptimes = null;
+	
+	// Last day, first friend and sleep time of each new node of the day,
+	// and new friend of each node which wakes up, computed by the workers
+	private int[] newlastday = new int[16];
+	private int[] newfirstfriend = new int[16];
+	private int[] newsleeptime = new int[16];
+	private int[] wakeupfriend = new int[16];
 
-	// All nodes
-	private ArrayList<Node> nodes;
+	// All nodes, stored by index as arrays of their fields instead of objects.
+	// The friends of node i are stored in the friend list pool
+	// at address friendaddr[i], with degree[i] friends.
+	private int numnodes = 0;
+	private int[] lastday;
+	private int[] degree;
+	private long[] friendaddr;
+	private IntListPool friendlists;
 	
 	// Counter for use with node ids
-	private static int nodecounter = 0;
+	private int nodecounter = 0;
 	
 	// Counter for use with edge ids
-	private static int edgecounter = 0;
+	private int edgecounter = 0;
 	
 	public Graph generateGraph() {
 		return this.generateGraph(null);
@@ -123,19 +252,110 @@ public class MicroEvolution extends BaseConfigurable implements Generator {
 			beta = this.getDoubleParameter("beta");
 		}
 		
-		int seed = 0;
+		this.seed = 0;
 		if(this.hasParameter("seed")) {
 			seed = this.getIntegerParameter("seed");
 		}
+		
+		if(this.hasParameter("listenerclass")) {
+			double reportinterval = 10;
+			if(this.hasParameter("reportinterval")) {
+				reportinterval = this.getDoubleParameter("reportinterval");
+			}
+			
+			GeneratorListener listener = (GeneratorListener) Dynamic.forConfigurableName(
+					GeneratorListener.class, this.getStringParameter("listenerclass"), this);
+			this.metrics = new GeneratorMetrics(MicroEvolution.class.getSimpleName(),
+					listener, reportinterval);
+			this.metrics.start();
+		}
+		
+		if(this.hasParameter("firstfriend", "scan")) {
+			this.endpoints = null;
+		} else if(this.hasParameter("firstfriend", "endpoint")) {
+			this.endpoints = new int[16];
+		} else if(this.hasParameter("firstfriend")) {
+			throw new ConfigurationException("Invalid firstfriend option: "
+					+this.getStringParameter("firstfriend"));
+		}
+		numendpoints = 0;
+		
+		this.numthreads = 0;
+		if(this.hasParameter("numthreads")) {
+			this.numthreads = (int) this.getDoubleParameter("numthreads");
+			if(this.numthreads < 1) {
+				throw new ConfigurationException("Invalid numthreads: "+this.numthreads);
+			}
+		}
+		
+		if(this.hasParameter("pickfriend", "scan")) {
+			this.friendships = null;
+		} else if(this.hasParameter("pickfriend", "hashed")) {
+			this.friendships = new LongHashSet(16);
+		} else if(this.hasParameter("pickfriend")) {
+			throw new ConfigurationException("Invalid pickfriend option: "
+					+this.getStringParameter("pickfriend"));
+		}
 
 		// Initialize
 		generator = new MersenneTwister(seed);
+		
+		int maxtabledegree = 0;
+		if(this.hasParameter("sleeptime", "rejection")) {
+			maxtabledegree = 0;
+		} else if(this.hasParameter("sleeptime", "table")) {
+			maxtabledegree = SleepTimeSampler.DEFAULT_MAX_TABLE_DEGREE;
+		} else if(this.hasParameter("sleeptime")) {
+			throw new ConfigurationException("Invalid sleeptime option: "
+					+this.getStringParameter("sleeptime"));
+		}
+		
+		this.sleeptimes = new SleepTimeSampler(generator, alpha, beta,
+				SleepTimeSampler.DEFAULT_HORIZON, maxtabledegree);
+		
 		currentDay = 1;
 		totalLinks=0;
 		maxDegree=1;
+		
+		String savestatefile = null;
+		if(this.hasParameter("savestatefile")) {
+			savestatefile = this.getStringParameter("savestatefile");
+		}
+		
+		// Wake-ups after the last day are only needed to continue the evolution
+		lastScheduleDay = savestatefile == null ? lastEvolDay : Integer.MAX_VALUE;
 
-		// Create internal graph
-		this.evolve(nodesPerDay, lastEvolDay);
+		// Create internal graph, continuing from the saved state if specified
+		if(this.hasParameter("loadstatefile")) {
+			this.loadState(this.getStringParameter("loadstatefile"), lastEvolDay);
+		} else {
+			this.createInitialNodes(nodesPerDay, lastEvolDay);
+		}
+		
+		if(this.numthreads > 0) {
+			this.executor = Executors.newFixedThreadPool(this.numthreads);
+			this.workers = new DayWorker[this.numthreads];
+			for(int i=0; i<this.workers.length; i++) {
+				this.workers[i] = new DayWorker();
+			}
+			
+			this.dayrand = new SplitMixEngine(0);
+			this.daysleeptimes = new SleepTimeSampler(this.sleeptimes, dayrand);
+		}
+		
+		try {
+			this.evolve(lastEvolDay);
+		} finally {
+			if(this.executor != null) {
+				this.executor.shutdown();
+				this.executor = null;
+				this.workers = null;
+			}
+		}
+		
+		if(savestatefile != null) {
+			this.saveState(savestatefile);
+		}
 
 		// Create GAIA Graph from internal graph
 		String graphsid = "megraph";
@@ -161,22 +381,35 @@ public class MicroEvolution extends BaseConfigurable implements Generator {
 		}
 		
 		boolean isdirected = true;
-		String savedesid = null;
 		if(this.hasParameter("isdirected", "yes")) {
 			isdirected = true;
 		} else if(this.hasParameter("isdirected", "no")) {
 			isdirected = false;
-			
-			// Save the schema id to use for later
-			savedesid = edgesid;
-			
-			// Use a temporary schema id for now
-			edgesid = "tmpffdir";
 		} else if(this.hasParameter("isdirected")) {
 			throw new ConfigurationException("Invalid isdirected option: "
 					+this.getStringParameter("isdirected"));
 		}
 		
+		boolean statistics = false;
+		if(this.hasParameter("statistics", "yes")) {
+			statistics = true;
+		} else if(this.hasParameter("statistics", "no")) {
+			statistics = false;
+		} else if(this.hasParameter("statistics")) {
+			throw new ConfigurationException("Invalid statistics option: "
+					+this.getStringParameter("statistics"));
+		}
+		
+		int clusteringsamples = 10000;
+		if(this.hasParameter("clusteringsamples")) {
+			clusteringsamples = (int) this.getDoubleParameter("clusteringsamples");
+		}
+		
+		int diametersources = 100;
+		if(this.hasParameter("diametersources")) {
+			diametersources = (int) this.getDoubleParameter("diametersources");
+		}
+		
 		// Create graph
 		GraphID gid = new GraphID(graphsid, graphobjid);
 		String graphclass = DataGraph.class.getCanonicalName();
@@ -194,337 +427,837 @@ public class MicroEvolution extends BaseConfigurable implements Generator {
 		g.copyParameters(this);
 		
 		g.addSchema(nodesid, new Schema(SchemaType.NODE));
-		g.addSchema(edgesid, new Schema(SchemaType.DIRECTED));
-		
-		// Copy all nodes from internal graph
-		for(Node n:nodes) {
-			g.addNode(new GraphItemID(g.getID(), nodesid, ""+n.getID()));
-		}
+		g.addSchema(edgesid, new Schema(isdirected ? SchemaType.DIRECTED : SchemaType.UNDIRECTED));
 		
-		// Copy all edges from internal graph
-		for(Node n:nodes) {
-			List<Node> friends = n.friends;
-			for(Node f:friends) {
-				if(n.equals(f)) {
-					continue;
+		// Copy all nodes and edges from internal graph.
+		// Friendships are stored in both nodes so, if undirected,
+		// the materializer only adds an edge the first time a pair of friends is seen.
+		GraphMaterializer materializer = new GraphMaterializer(g, nodesid, edgesid,
+				isdirected, firstnodeid, edgecounter, numnodes, totalLinks);
+		materializer.addNodes(numnodes);
+		// Each friendship is added as two directed edges, or one undirected edge
+		this.graphstatistics = statistics ?
+				new GraphStatistics(numnodes, isdirected, isdirected ? 2L*totalLinks : totalLinks) : null;
+		for(int n=0; n<numnodes; n++) {
+			for(int i=0; i<degree[n]; i++) {
+				int f = this.getFriend(n, i);
+				if(n != f) {
+					materializer.addEdge(n, f);
+					if(this.graphstatistics != null && (isdirected || n < f)) {
+						this.graphstatistics.addEdge(n, f);
+					}
 				}
-				
-				linqs.gaia.graph.Node source = g.getNode(
-						new GraphItemID(g.getID(), nodesid, ""+n.getID()));
-				linqs.gaia.graph.Node target = g.getNode(
-						new GraphItemID(g.getID(), nodesid, ""+f.getID()));
-				
-				g.addDirectedEdge(new GraphItemID(g.getID(),
-						edgesid, (edgecounter++)+""), source, target);
 			}
 		}
+		
+		edgecounter = materializer.getNextEdgeID();
 
 		// Clear all
-		this.schNodes.clear();
-		this.nodes.clear();
+		this.schNodes = null;
+		this.numnodes = 0;
+		this.lastday = null;
+		this.degree = null;
+		this.friendaddr = null;
+		this.friendlists = null;
+		if(this.endpoints != null) {
+			this.endpoints = new int[16];
+			this.numendpoints = 0;
+		}
+		
+		if(this.friendships != null) {
+			this.friendships = new LongHashSet(16);
+		}
 		
-		if(!isdirected) {
-			this.convertDir2Undir(g, edgesid, savedesid);
+		if(this.metrics != null) {
+			this.metrics.finish();
 		}
 		
-		Log.INFO("Graph generated: "+GraphUtils.getSimpleGraphOverview(g));
+		if(this.graphstatistics != null) {
+			SimpleTimer statstimer = new SimpleTimer();
+			this.graphstatistics.compute(this.numthreads > 0 ? this.numthreads
+					: Runtime.getRuntime().availableProcessors(),
+					clusteringsamples, diametersources, seed);
+			Log.INFO("Graph generated: "+this.graphstatistics
+					+"\nTime to compute statistics: "+statstimer.timeLapse(true));
+		} else {
+			Log.INFO("Graph generated: "+GraphUtils.getSimpleGraphOverview(g));
+		}
 
 		return g;
 	}
+	
+	/**
+	 * Get the statistics of the last generated graph
+	 * 
+	 * @return Statistics, or null if statistics is not yes
+	 */
+	public GraphStatistics getStatistics() {
+		return this.graphstatistics;
+	}
 
 	/**
-	 * Evolve model
+	 * Create the first two nodes, which connect to each other
 	 * 
 	 * @param nodesPerDay
 	 * @param lastEvolDay
 	 */
-	private void evolve(int nodesPerDay, int lastEvolDay){
-		Node friend;
+	private void createInitialNodes(int nodesPerDay, int lastEvolDay){
 		int sleeptime;
-		ArrayList<Node> list;
-		int key;
 
-		schNodes = new HashMap<Integer, ArrayList<Node>>(lastEvolDay);
-		nodes = new ArrayList<Node>(lastEvolDay*nodesPerDay+2); 
+		schNodes = new IntCalendarQueue(currentDay, 256);
+		int capacity = Math.max(lastEvolDay*nodesPerDay+2, 16);
+		numnodes = 0;
+		lastday = new int[capacity];
+		degree = new int[capacity];
+		friendaddr = new long[capacity];
+		friendlists = new IntListPool();
+		firstnodeid = nodecounter;
 
 		// the first two nodes connect to each other
-		Node n1 = new Node(currentDay, lambda);
-		sleeptime = contPowerLawExpCutoff(alpha, beta);
-		if (sleeptime+currentDay<=n1.getLastDay() && sleeptime < lastEvolDay){
-			list = new ArrayList<Node>();
-			list.add(n1);
-			schNodes.put(sleeptime+currentDay,list);	
+		int n1 = this.addNode();
+		sleeptime = sleeptimes.sample(1);
+		if (sleeptime+currentDay<=lastday[n1] && sleeptime+currentDay<=lastScheduleDay){
+			schedule(sleeptime+currentDay, n1);
 		}
 		
-		Node n = new Node(currentDay, lambda);
-		sleeptime = contPowerLawExpCutoff(alpha, beta);
-		if (sleeptime+currentDay<=n.getLastDay() && sleeptime < lastEvolDay){
-			list = new ArrayList<Node>();
-			list.add(n);
-			schNodes.put(sleeptime+currentDay,list);	
+		int n = this.addNode();
+		sleeptime = sleeptimes.sample(1);
+		if (sleeptime+currentDay<=lastday[n] && sleeptime+currentDay<=lastScheduleDay){
+			// Note: This replaces the first node if it was scheduled for the same day
+			schNodes.clear(sleeptime+currentDay);
+			schedule(sleeptime+currentDay, n);
 		}
 
-		n.connect(n1);
+		connect(n, n1);
 		updateTotalLinks(n);
-		n1.connect(n);
+		connect(n1, n);
 		updateTotalLinks(n1);
 		totalLinks--;
 
-		nodes.add(n1);
-		nodes.add(n);
+		this.recordNode();
+		this.recordNode();
+		this.recordEdge();
+	}
+	
+	/**
+	 * Evolve model
+	 * 
+	 * @param lastEvolDay
+	 */
+	private void evolve(int lastEvolDay){
+		int nodesPerDay;
 
 		// go through the days...
 		while (currentDay<=lastEvolDay){
 			
-			Log.INFO("Day "+currentDay+"\tDegree="+maxDegree+"\t#Nodes="+this.nodes.size());
+			Log.INFO("Day "+currentDay+"\tDegree="+maxDegree+"\t#Nodes="+numnodes);
 
 			// Put your explicit node arrival function by adjusting
 			// number of nodes per day
-			nodesPerDay=(int) Math.floor(5000*Math.exp(0.25/30*currentDay))-nodes.size();
+			nodesPerDay=(int) Math.floor(5000*Math.exp(0.25/30*currentDay))-numnodes;
+			
+			if(this.executor != null) {
+				this.evolveDayInParallel(nodesPerDay);
+			} else {
+				this.evolveDay(nodesPerDay);
+			}
+			
+			schNodes.advance();
+			
+			if(this.metrics != null) {
+				this.metrics.checkReport();
+			}
+
+			currentDay++;
+		}
+	}
+	
+	/**
+	 * Add the new nodes and wake up the scheduled nodes of the current day,
+	 * one at a time
+	 * 
+	 * @param nodesPerDay Number of new nodes
+	 */
+	private void evolveDay(int nodesPerDay){
+		int n;
+		int friend;
+		
+		//***** STEP 1: create new nodes and make them connect to someone 
+		for (int i=0; i<nodesPerDay; i++){
+			// 1a) sample from lifetime as node is created
+			n = this.addNode();
+			
+			//***** STEP 2: node adds the first edge to node v 
+			// with probability proportional to its degree
+			int temp = pickFirstFriend(generator, n); 
+			this.recordNode();
+			this.connectFriends(n, temp);
 			
-			//***** STEP 1: create new nodes and make them connect to someone 
-			for (int i=0; i<nodesPerDay; i++){
-				// 1a) sample from lifetime as node is created
-				n = new Node(currentDay, lambda);
+			// picks a sleeping time
+			this.scheduleWakeup(n, sleeptimes.sample(1));
+		}
+		
+		// 2. wake up old nodes if they are due
+		// n.sleepTime = getSleepTime(alpha,beta*n.getDegree()) + currentDay;
+		int numwakeups = schNodes.size(currentDay);
+		if (numwakeups!=0){
+			if(this.metrics != null) {
+				this.metrics.recordQueueDepth(numwakeups);
+			}
+			
+			for(int w=0; w<numwakeups; w++){
+				// connect to someone you don't know
+				n=schNodes.get(currentDay, w);
+				friend=pickFriend(generator, n);
+				if (friend!=-1){
+					this.connectFriends(n, friend);
+				}
 				
-				//***** STEP 2: node adds the first edge to node v 
-				// with probability proportional to its degree
-				Node temp = pickFirstFriend(); 
-				n.connect(temp);
+				// picks a sleeping time
+				this.scheduleWakeup(n, sleeptimes.sample(degree[n]));
+			}
+		}
+	}
+	
+	/**
+	 * Add the new nodes and wake up the scheduled nodes of the current day.
+	 * The workers pick the first friends of the new nodes in parallel, based on
+	 * the friendships at the start of the day, and the new nodes are then added in order.
+	 * The workers then pick the new friends of the nodes which wake up in parallel,
+	 * and the friendships are then added in order, skipping friendships
+	 * added earlier that day.
+	 * 
+	 * @param nodesPerDay Number of new nodes
+	 */
+	private void evolveDayInParallel(int nodesPerDay) {
+		int numwakeups = schNodes.size(currentDay);
+		int numitems = Math.max(Math.max(nodesPerDay, numwakeups), 0);
+		if(numitems > newlastday.length) {
+			int newsize = Math.max(numitems, newlastday.length + (newlastday.length >> 1));
+			newlastday = new int[newsize];
+			newfirstfriend = new int[newsize];
+			newsleeptime = new int[newsize];
+			wakeupfriend = new int[newsize];
+		}
+		
+		this.runWorkers(NEW_NODES, nodesPerDay);
+		for(int i=0; i<nodesPerDay; i++) {
+			int n = this.addNode(newlastday[i]);
+			this.recordNode();
+			this.connectFriends(n, newfirstfriend[i]);
+			this.scheduleWakeup(n, newsleeptime[i]);
+		}
+		
+		if(numwakeups == 0) {
+			return;
+		}
+		
+		if(this.metrics != null) {
+			this.metrics.recordQueueDepth(numwakeups);
+		}
+		
+		this.runWorkers(WAKEUPS, numwakeups);
+		
+		// Sleep times depend on the degree after adding the friendships
+		// so they are drawn as the friendships are added
+		long sleepseed = this.getDaySeed(WAKEUP_SLEEPTIMES);
+		for(int w=0; w<numwakeups; w++) {
+			int n = schNodes.get(currentDay, w);
+			int friend = wakeupfriend[w];
+			if(friend != -1 && !this.areFriends(n, friend)) {
+				this.connectFriends(n, friend);
+			}
+			
+			dayrand.setSeed(SeedUtils.deriveSeed(sleepseed, w));
+			this.scheduleWakeup(n, daysleeptimes.sample(degree[n]));
+		}
+	}
+	
+	/**
+	 * Split the new nodes, or the nodes which wake up, of the current day
+	 * among the workers and wait for the workers to process them
+	 * 
+	 * @param phase NEW_NODES or WAKEUPS
+	 * @param numitems Number of nodes to process
+	 */
+	private void runWorkers(int phase, int numitems) {
+		if(numitems <= 0) {
+			return;
+		}
+		
+		long dayseed = this.getDaySeed(phase);
+		int numworkers = Math.min(workers.length, numitems);
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(numworkers);
+		try {
+			for(int i=0; i<numworkers; i++) {
+				workers[i].setRange(phase, dayseed,
+						(int) ((long) numitems*i/numworkers),
+						(int) ((long) numitems*(i+1)/numworkers));
+				futures.add(executor.submit(workers[i]));
+			}
+			
+			for(Future<Object> f:futures) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
+	/**
+	 * @param phase Phase of the day
+	 * @return Seed, derived from the generator seed, for the given phase of the current day
+	 */
+	private long getDaySeed(int phase) {
+		return SeedUtils.deriveSeed(SeedUtils.deriveSeed(seed, phase), currentDay);
+	}
+	
+	/**
+	 * Connect two nodes which become friends
+	 * 
+	 * @param n Index of node
+	 * @param friend Index of new friend
+	 */
+	private void connectFriends(int n, int friend) {
+		connect(n, friend);
+		
+		// if undirected links
+		connect(friend, n);
+		updateTotalLinks(n);
+		updateTotalLinks(friend);
+		totalLinks--;
+		this.recordEdge();
+	}
+	
+	/**
+	 * Schedule the next wake-up of a node, if it is not after
+	 * the last day of the node or the last day for which wake-ups are scheduled
+	 * 
+	 * @param n Index of node
+	 * @param sleeptime Sleep time of node
+	 */
+	private void scheduleWakeup(int n, int sleeptime) {
+		int key = sleeptime+currentDay;
+		if (key<=lastday[n] && key<=lastScheduleDay){
+			schedule(key, n);
+		}
+	}
+	
+	/**
+	 * @param n Index of node
+	 * @param f Index of other node
+	 * @return True if the nodes are friends
+	 */
+	private boolean areFriends(int n, int f) {
+		if(this.friendships != null) {
+			return this.friendships.contains(LongHashSet.undirectedKey(n, f));
+		}
+		
+		return this.isFriend(n, f);
+	}
+	
+	/**
+	 * Parameters which must be the same when continuing from a saved state
+	 * 
+	 * @return String representation of the parameters
+	 */
+	private String getStateConfiguration() {
+		return "seed="+seed+",alpha="+alpha+",beta="+beta+",lambda="+lambda
+			+",firstfriend="+(endpoints != null ? "endpoint" : "scan")
+			+",pickfriend="+(friendships != null ? "hashed" : "scan")
+			+",sleeptime="+(sleeptimes.getMaxTableDegree() != 0 ? "table" : "rejection")
+			+",parallel="+(numthreads > 0);
+	}
+	
+	/**
+	 * Write the state of the evolution after the last day.
+	 * <p>
+	 * The state contains, in order, a magic number and version,
+	 * the parameters from {@link #getStateConfiguration()}, the current day,
+	 * the counters, the serialized random number generator,
+	 * the last day and friends of every node, the endpoints, if picking
+	 * first friends by endpoint, and the nodes scheduled for each day.
+	 * The file is written to a temporary file
+	 * (savestatefile followed by .tmp) which then replaces the file.
+	 * 
+	 * @param statefile State file
+	 */
+	private void saveState(String statefile) {
+		SimpleTimer statetimer = new SimpleTimer();
+		File file = new File(statefile);
+		File tmpfile = new File(statefile+".tmp");
+		try {
+			ByteArrayOutputStream generatorbytes = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(generatorbytes);
+			oos.writeObject(generator);
+			oos.close();
+			
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tmpfile), 1<<16));
+			out.writeInt(STATE_MAGIC);
+			out.writeInt(STATE_VERSION);
+			out.writeUTF(this.getStateConfiguration());
+			
+			out.writeInt(currentDay);
+			out.writeInt(totalLinks);
+			out.writeInt(maxDegree);
+			out.writeInt(firstnodeid);
+			out.writeInt(nodecounter);
+			out.writeInt(edgecounter);
+			
+			out.writeInt(generatorbytes.size());
+			generatorbytes.writeTo(out);
+			
+			out.writeInt(numnodes);
+			for(int n=0; n<numnodes; n++) {
+				out.writeInt(lastday[n]);
+				out.writeInt(degree[n]);
+				for(int i=0; i<degree[n]; i++) {
+					out.writeInt(this.getFriend(n, i));
+				}
+			}
+			
+			out.writeInt(endpoints == null ? -1 : numendpoints);
+			for(int i=0; endpoints != null && i<numendpoints; i++) {
+				out.writeInt(endpoints[i]);
+			}
+			
+			// Days with scheduled nodes, from the first day of the schedule
+			long numscheduled = schNodes.numScheduled();
+			out.writeLong(numscheduled);
+			for(int day=schNodes.getFirstDay(); numscheduled > 0; day++) {
+				int size = schNodes.size(day);
+				if(size == 0) {
+					continue;
+				}
 				
-				// if undirected links
-				temp.connect(n);
-				updateTotalLinks(n);
-				updateTotalLinks(temp);
-				totalLinks--;
-				nodes.add(n);
+				out.writeInt(day);
+				out.writeInt(size);
+				for(int i=0; i<size; i++) {
+					out.writeInt(schNodes.get(day, i));
+				}
 				
-				// picks a sleeping time
-				sleeptime = contPowerLawExpCutoff(alpha, beta);
-				key = sleeptime+currentDay;
-				if (key<=n.getLastDay() && key<=lastEvolDay){
-					// check if there is anything saved for this day
-					if (schNodes.containsKey(key)){
-						list = schNodes.get(key);
-						list.add(n);
-						schNodes.put(key, list);
-					}
-					else{
-						list = new ArrayList<Node>();
-						list.add(n);
-						schNodes.put(sleeptime+currentDay,list);	
-					}
+				numscheduled -= size;
+			}
+			
+			out.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to write state: "+tmpfile, e);
+		}
+		
+		if((file.exists() && !file.delete()) || !tmpfile.renameTo(file)) {
+			throw new InvalidStateException("Unable to replace state: "+file);
+		}
+		
+		Log.INFO("State written: day="+(currentDay-1)+" nodes="+numnodes
+				+" "+statetimer.timeLapse(true));
+	}
+	
+	/**
+	 * Restore the state of the evolution, written by {@link #saveState(String)},
+	 * so that the evolution continues from the day after the last day of that run
+	 * 
+	 * @param statefile State file
+	 * @param lastEvolDay Last day of the evolution
+	 */
+	private void loadState(String statefile, int lastEvolDay) {
+		File file = new File(statefile);
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file), 1<<16));
+			if(in.readInt() != STATE_MAGIC || in.readInt() != STATE_VERSION) {
+				in.close();
+				throw new InvalidStateException("Invalid state file: "+file);
+			}
+			
+			String configuration = in.readUTF();
+			if(!configuration.equals(this.getStateConfiguration())) {
+				in.close();
+				throw new ConfigurationException("State was written using "+configuration
+						+" but continuing with "+this.getStateConfiguration());
+			}
+			
+			currentDay = in.readInt();
+			if(currentDay-1 > lastEvolDay) {
+				in.close();
+				throw new ConfigurationException("State is after the last day: "
+						+(currentDay-1)+" > "+lastEvolDay);
+			}
+			
+			totalLinks = in.readInt();
+			maxDegree = in.readInt();
+			firstnodeid = in.readInt();
+			nodecounter = in.readInt();
+			edgecounter = in.readInt();
+			
+			byte[] generatorbytes = new byte[in.readInt()];
+			in.readFully(generatorbytes);
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(generatorbytes));
+			generator = (RandomEngine) ois.readObject();
+			ois.close();
+			
+			// Cached tables of the sleep time sampler do not depend on the generator
+			sleeptimes.setGenerator(generator);
+			
+			int savednodes = in.readInt();
+			int capacity = Math.max(savednodes+(savednodes>>1), 16);
+			numnodes = savednodes;
+			lastday = new int[capacity];
+			degree = new int[capacity];
+			friendaddr = new long[capacity];
+			friendlists = new IntListPool();
+			for(int n=0; n<savednodes; n++) {
+				lastday[n] = in.readInt();
+				int numfriends = in.readInt();
+				for(int i=0; i<numfriends; i++) {
+					this.connect(n, in.readInt());
 				}
 			}
-
-			// 2. wake up old nodes if they are due
-			// n.sleepTime = getSleepTime(alpha,beta*n.getDegree()) + currentDay;
-			if (schNodes.containsKey(currentDay)){
-				Enumeration<Node> e = Collections.enumeration(schNodes.get(currentDay));
-				while(e.hasMoreElements()){
-					// connect to someone you don't know
-					n=e.nextElement();
-					friend=pickFriend(n);
-					if (friend!=null){
-						n.connect(friend);
-						
-						// if undirected links
-						friend.connect(n);
-						updateTotalLinks(n);
-						updateTotalLinks(friend);
-						totalLinks--;
-					}
-					
-					// picks a sleeping time
-					sleeptime = contPowerLawExpCutoff(alpha, beta*n.getDegree());
-					key = sleeptime+currentDay;
-					if (key<=n.getLastDay() && key<=lastEvolDay){
-						// check if there is anything saved for this day
-						if (schNodes.containsKey(key)){
-							list = schNodes.get(key);
-							list.add(n);
-							schNodes.put(key, list);
-						}
-						else{
-							list = new ArrayList<Node>();
-							list.add(n);
-							schNodes.put(sleeptime+currentDay,list);	
-						}
-					}
+			
+			int savedendpoints = in.readInt();
+			if((savedendpoints >= 0) != (endpoints != null)) {
+				in.close();
+				throw new InvalidStateException("Endpoints inconsistent with configuration: "
+						+savedendpoints);
+			}
+			
+			numendpoints = 0;
+			if(endpoints != null) {
+				endpoints = new int[Math.max(savedendpoints, 16)];
+				for(int i=0; i<savedendpoints; i++) {
+					endpoints[numendpoints++] = in.readInt();
 				}
 			}
 			
-			schNodes.remove(currentDay);
-
-			currentDay++;
+			schNodes = new IntCalendarQueue(currentDay, 256);
+			long numscheduled = in.readLong();
+			while(numscheduled > 0) {
+				int day = in.readInt();
+				int size = in.readInt();
+				for(int i=0; i<size; i++) {
+					schNodes.add(day, in.readInt());
+				}
+				
+				numscheduled -= size;
+			}
+			
+			in.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read state: "+file, e);
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException("Unable to read state: "+file, e);
+		}
+		
+		Log.INFO("State loaded: day="+(currentDay-1)+" nodes="+numnodes);
+	}
+	
+	/**
+	 * Add a new node, sampling the last day when it can connect to someone
+	 * 
+	 * @return Index of the new node
+	 */
+	private int addNode() {
+		// STEP 1a)
+		// sample from an exponential distribution:
+		// how many days it will live + the current day
+		return this.addNode(contExponential(generator, lambda) + currentDay);
+	}
+	
+	/**
+	 * Add a new node
+	 * 
+	 * @param nodelastday Last day when the node can connect to someone
+	 * @return Index of the new node
+	 */
+	private int addNode(int nodelastday) {
+		if(numnodes == degree.length) {
+			int newsize = numnodes + (numnodes >> 1) + 1;
+			lastday = Arrays.copyOf(lastday, newsize);
+			degree = Arrays.copyOf(degree, newsize);
+			friendaddr = Arrays.copyOf(friendaddr, newsize);
+		}
+		
+		int n = numnodes++;
+		nodecounter++;
+		
+		lastday[n] = nodelastday;
+		degree[n] = 0;
+		
+		return n;
+	}
+	
+	/**
+	 * Add a friend to the friends of a node
+	 * 
+	 * @param n Index of node
+	 * @param f Index of friend
+	 */
+	private void connect(int n, int f) {
+		friendaddr[n] = friendlists.append(friendaddr[n], degree[n], f);
+		degree[n]++;
+		if(friendships != null) {
+			friendships.add(LongHashSet.undirectedKey(n, f));
+		}
+	}
+	
+	/**
+	 * @param n Index of node
+	 * @param i Index, from 0 to the degree of the node-1, of the friend
+	 * @return Index of the i-th friend of the node
+	 */
+	private int getFriend(int n, int i) {
+		return friendlists.get(friendaddr[n], i);
+	}
+	
+	/**
+	 * Schedule a node to wake up.  Days which are not after the current day
+	 * (i.e., due to the sleep time overflowing) are never reached so nothing is scheduled.
+	 * 
+	 * @param day Day to wake up
+	 * @param n Index of node
+	 */
+	private void schedule(int day, int n) {
+		if(day > currentDay) {
+			schNodes.add(day, n);
 		}
 	}
 
-	private void updateTotalLinks(Node updated){
+	private void updateTotalLinks(int updated){
 		totalLinks++;
-		if (updated.getDegree()>maxDegree)
-			maxDegree=updated.getDegree();
+		if (degree[updated]>maxDegree)
+			maxDegree=degree[updated];
+		
+		if(this.endpoints != null) {
+			if(numendpoints == endpoints.length) {
+				endpoints = Arrays.copyOf(endpoints, 2*endpoints.length);
+			}
+			
+			endpoints[numendpoints++] = updated;
+		}
+		
+		if(this.metrics != null) {
+			this.metrics.recordDegree(degree[updated]);
+		}
+	}
+	
+	/**
+	 * Count an added node in the metrics, if specified
+	 */
+	private void recordNode() {
+		if(this.metrics != null) {
+			this.metrics.addNode();
+		}
+	}
+	
+	/**
+	 * Count an added friendship in the metrics, if specified
+	 */
+	private void recordEdge() {
+		if(this.metrics != null) {
+			this.metrics.addEdge();
+		}
 	}
 
-	private Node pickFriend(Node n){
-		Node temp=null;
+	private int pickFriend(RandomEngine rand, int n){
+		if(this.friendships != null) {
+			return this.pickFriendHashed(rand, n);
+		}
+		
+		int temp=-1;
 		boolean newfriend=false;
 		int attempts = 0;
 		// make sure the new friend is not a friend already and is not yourself
 		while(newfriend==false){
-			int i = (int) Math.floor(generator.raw()*(n.friends.size()));
-			temp = n.friends.get(i);
-			int j = (int) Math.floor(generator.raw()*(temp.friends.size()));
-			if (!n.friends.contains(temp.friends.get(j)) && !n.equals(temp.friends.get(j)))
-				return temp.friends.get(j);
+			int i = (int) Math.floor(rand.raw()*degree[n]);
+			temp = getFriend(n, i);
+			int j = (int) Math.floor(rand.raw()*degree[temp]);
+			int candidate = getFriend(temp, j);
+			if (!isFriend(n, candidate) && n != candidate)
+				return candidate;
 			
 			// if it cannot find a node 2 hopes away that is not already a friend (infinite loop..),
 			// then it would simply not add a friend
 			if (attempts > maxDegree*maxDegree)
-				return null;
+				return -1;
 			attempts++;
 		}
 		return temp;
 	}
+	
+	/**
+	 * @param n Index of node
+	 * @param f Index of other node
+	 * @return True if the other node is in the friends of the node
+	 */
+	private boolean isFriend(int n, int f) {
+		long address = friendaddr[n];
+		for(int i=0; i<degree[n]; i++) {
+			if(friendlists.get(address, i) == f) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
 
+	/**
+	 * Pick a friend of a friend of the node which is not already a friend
+	 * and is not the node itself, checking friendships using the hashed friendships.
+	 * Each candidate is picked with the probability that drawing a random friend
+	 * of a random friend, until a candidate is drawn, picks it.
+	 * 
+	 * @param rand Random number generator
+	 * @param n Index of node to pick friend for
+	 * @return Index of picked friend, or -1 if there are no candidates
+	 */
+	private int pickFriendHashed(RandomEngine rand, int n) {
+		int numfriends = degree[n];
+		for(int attempt=0; attempt<MAX_FRIEND_ATTEMPTS; attempt++) {
+			int temp = getFriend(n, (int) Math.floor(rand.raw()*numfriends));
+			int candidate = getFriend(temp, (int) Math.floor(rand.raw()*degree[temp]));
+			if(this.isNewFriend(n, candidate)) {
+				return candidate;
+			}
+		}
+		
+		// Most friends of friends are already friends so enumerate the candidates.
+		// A candidate reached through friend f is drawn with probability
+		// 1/(degree of n * degree of f).
+		double total = 0;
+		for(int i=0; i<numfriends; i++) {
+			int f = getFriend(n, i);
+			int numcandidates = 0;
+			for(int j=0; j<degree[f]; j++) {
+				if(this.isNewFriend(n, getFriend(f, j))) {
+					numcandidates++;
+				}
+			}
+			
+			total += (double) numcandidates/degree[f];
+		}
+		
+		if(total == 0) {
+			return -1;
+		}
+		
+		double r = rand.raw()*total;
+		int last = -1;
+		for(int i=0; i<numfriends; i++) {
+			int f = getFriend(n, i);
+			double weight = 1.0/degree[f];
+			for(int j=0; j<degree[f]; j++) {
+				int candidate = getFriend(f, j);
+				if(this.isNewFriend(n, candidate)) {
+					r -= weight;
+					last = candidate;
+					if(r < 0) {
+						return candidate;
+					}
+				}
+			}
+		}
+		
+		// Only reached due to rounding
+		return last;
+	}
+	
+	/**
+	 * @param n Index of node
+	 * @param candidate Index of candidate friend
+	 * @return True if the candidate is not the node and not already a friend of the node
+	 */
+	private boolean isNewFriend(int n, int candidate) {
+		return n != candidate && !friendships.contains(LongHashSet.undirectedKey(n, candidate));
+	}
+	
 	/**
 	 * Node adds the first edge to node v with probability proportional to its degree  
 	 * 
-	 * @return
+	 * @param rand Random number generator
+	 * @param newnode Index of the new node.  Only nodes added before it are picked.
+	 * @return Index of the picked node
 	 */
-	private Node pickFirstFriend(){
+	private int pickFirstFriend(RandomEngine rand, int newnode){
+		if(this.endpoints != null) {
+			// Every node appears once per friend, so a uniformly drawn entry
+			// is a node drawn with probability proportional to its degree
+			return endpoints[(int) Math.floor(rand.raw()*numendpoints)];
+		}
+		
 		boolean found = false;
-		Node temp=null;
+		int temp=-1;
 		int sum=0;
-		int n = (int) Math.ceil(generator.raw()*maxDegree);
+		int n = (int) Math.ceil(rand.raw()*maxDegree);
 
 		while(found==false){
-			temp=nodes.get((int) Math.floor(generator.raw()*nodes.size()));
-			if (n<=temp.getDegree()+sum)
+			temp=(int) Math.floor(rand.raw()*newnode);
+			if (n<=degree[temp]+sum)
 				found=true;
 			else
-				sum+=temp.getDegree();
+				sum+=degree[temp];
 		}
 
 		return temp;
 	}
 
-	/**
-	 * This function approximates the random number generation from a discrete power-law 
-	 * distribution quite well (from Clauset's paper)
-	 * 
-	 * @param alpha
-	 * @return
-	 */
-	private int contPowerLaw(double alpha){
-		double u = generator.raw();
-		int xmin=1; 
-		return (int) Math.floor(((xmin-1/2)*Math.pow(1-u,-1/(1-alpha))+1/2));
-	}
-
-
-	private int contExponential(double exponent){
+	private int contExponential(RandomEngine rand, double exponent){
 		int xmin=1; 
-		double u = generator.raw();
+		double u = rand.raw();
 		return (int) Math.floor(xmin-(1/exponent)*Math.log(1-u));
 	}
-
-	/**
-	 * This function approximates the discrete by getting a random number from either the exponential or
-	 * the power-law and then rejects according to the difference with the desired power-law distribution
-	 * with an exponential cutoff.
-	 * <p>
-	 * (Clauset's paper suggests always taking the exponential and accepting according to the difference 
-	 * with the power-law BUT this doesn't work well at low node degrees/cutoffs).
-	 * 
-	 * @param alpha
-	 * @param cutoff
-	 * @return
-	 */
-	private int contPowerLawExpCutoff(double alpha, double cutoff){
-		double xmin=1; 
-		double result=0;
-		double reject=1;
-		while (reject==1){
-			// gets a random number from the exponential distribution
-			result = contExponential(cutoff);
-			// accepts it with a probability that is
-			// 1-(the difference between the exponential and the desired distribution)
-			if (generator.raw() < Math.pow(result/xmin,-alpha))
-				reject=0;
-			// gets a random number from the power-law distribution
-			if (reject==1){
-				result=contPowerLaw(alpha);
-				// accepts it with a probability that is
-				// 1-(the difference between the power-law and the desired distribution)
-				if (generator.raw() < Math.pow(Math.E, -cutoff))
-					reject=0;
-			}
-		}
-		
-		return (int) result;
-	}
-
+	
 	/**
-	 * Internal node implementation for use with generator
+	 * Worker which processes a range of the new nodes, or of the nodes which wake up,
+	 * of the current day.  The random number generator of the worker is reseeded
+	 * for each node using a seed derived from the generator seed, the day and
+	 * the position of the node among the nodes of the day.  Workers only read
+	 * the friendships, and write the picked friends to the arrays of the day.
 	 */
-	private class Node{
-		// This is the last day when the node can connect to someone
-		private int lastDay;
+	private class DayWorker implements Callable<Object> {
+		private final SplitMixEngine rand = new SplitMixEngine(0);
+		private final SleepTimeSampler workersleeptimes;
 		
-		// Friends of node
-		private ArrayList<Node> friends;
+		private int phase = NEW_NODES;
+		private long dayseed = 0;
+		private int start = 0;
+		private int end = 0;
 		
-		// Unique identifier for nodes
-		private int id;
-
-		public Node(int currentDay, double lambda){
-			this.id = nodecounter++;
-			
-			// STEP 1a)
-			// sample  from an exponential distribution
-			ExponentialGen ng = new ExponentialGen(new LFSR113(), new ExponentialDist(lambda));
-			// should give a you number sampled from the distribution.
-			ng.nextDouble(); 
-			// how many days it will live + the current day
-			lastDay = contExponential(lambda) + currentDay;
-			friends = new ArrayList<Node>();
+		public DayWorker() {
+			// Share the tables, which do not depend on the random number generator
+			this.workersleeptimes = new SleepTimeSampler(sleeptimes, rand);
 		}
 		
-		public void connect(Node n){
-			friends.add(n);
-		}
-
-		public int contExponential(double exponent){
-			int xmin=1; 
-			double u = generator.raw();
-			return (int) Math.floor(xmin-(1/exponent)*Math.log(1-u));
-		}
-
-		public int getDegree(){
-			return friends.size();
-		}
-
-		public int getLastDay(){
-			return lastDay;
+		/**
+		 * Set the nodes to process
+		 * 
+		 * @param phase NEW_NODES or WAKEUPS
+		 * @param dayseed Seed for the phase of the day
+		 * @param start Position of the first node, among the nodes of the day
+		 * @param end Position after the last node
+		 */
+		public void setRange(int phase, long dayseed, int start, int end) {
+			this.phase = phase;
+			this.dayseed = dayseed;
+			this.start = start;
+			this.end = end;
 		}
 		
-		public int getID() {
-			return this.id;
+		public Object call() {
+			for(int i=start; i<end; i++) {
+				rand.setSeed(SeedUtils.deriveSeed(dayseed, i));
+				if(phase == NEW_NODES) {
+					// Only nodes which existed at the start of the day are picked
+					newlastday[i] = contExponential(rand, lambda) + currentDay;
+					newfirstfriend[i] = pickFirstFriend(rand, numnodes);
+					newsleeptime[i] = workersleeptimes.sample(1);
+				} else {
+					wakeupfriend[i] = pickFriend(rand, schNodes.get(currentDay, i));
+				}
+			}
+			
+			return null;
 		}
 	}
-	
-	/**
-	 * Convert directed edges to undirected
-	 * 
-	 * @param g Graph
-	 * @param dirsid Directed edge schema ID
-	 * @param undirsid Undirected edge schema ID
-	 */
-	private void convertDir2Undir(Graph g, String dirsid, String undirsid) {
-		GeneratorUtils.copyDir2Undir(g, dirsid, undirsid);
-		
-		g.removeAllGraphItems(dirsid);
-		g.removeSchema(dirsid);
-	}
 }
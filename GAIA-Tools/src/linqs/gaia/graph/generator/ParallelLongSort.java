@@ -0,0 +1,172 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel sort of long arrays, e.g., edges encoded as longs by generators.
+ * The array is split into parts which are sorted in parallel, and the sorted
+ * parts are then merged in pairs, in parallel, until a single part remains.
+ * Merging uses a temporary array of the same size as the sorted values.
+ */
+public class ParallelLongSort {
+	// Smallest part sorted by a single task
+	private static final int MIN_PART_SIZE = 1 << 14;
+	
+	/**
+	 * Sort the first size values of the array in increasing order
+	 * 
+	 * @param values Values to sort
+	 * @param size Number of values to sort
+	 * @param executor Executor to run the tasks with
+	 * @param numparts Number of parts to sort in parallel (e.g., number of threads)
+	 */
+	public static void sort(long[] values, int size, ExecutorService executor, int numparts) {
+		numparts = Math.max(1, Math.min(numparts, size / MIN_PART_SIZE));
+		if(numparts == 1) {
+			Arrays.sort(values, 0, size);
+			return;
+		}
+		
+		int[] runs = new int[numparts+1];
+		for(int i=0; i<=numparts; i++) {
+			runs[i] = (int) ((long) size*i/numparts);
+		}
+		
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(numparts);
+		for(int i=0; i<numparts; i++) {
+			tasks.add(new Merger(values, runs[i], runs[i+1], runs[i+1], null));
+		}
+		
+		run(executor, tasks);
+		
+		// Merge pairs of sorted runs until a single run remains
+		long[] src = values;
+		long[] dst = new long[size];
+		int numruns = numparts;
+		while(numruns > 1) {
+			int numnewruns = (numruns+1)/2;
+			int[] newruns = new int[numnewruns+1];
+			tasks.clear();
+			for(int r=0; r<numnewruns; r++) {
+				int lo = runs[2*r];
+				int mid = runs[Math.min(2*r+1, numruns)];
+				int hi = runs[Math.min(2*r+2, numruns)];
+				newruns[r] = lo;
+				tasks.add(new Merger(src, lo, mid, hi, dst));
+			}
+			
+			newruns[numnewruns] = size;
+			run(executor, tasks);
+			
+			long[] tmp = src;
+			src = dst;
+			dst = tmp;
+			runs = newruns;
+			numruns = numnewruns;
+		}
+		
+		if(src != values) {
+			System.arraycopy(src, 0, values, 0, size);
+		}
+	}
+	
+	/**
+	 * Sort the first size values of the array in increasing order and remove duplicates
+	 * 
+	 * @param values Values to sort
+	 * @param size Number of values to sort
+	 * @param executor Executor to run the tasks with
+	 * @param numparts Number of parts to sort in parallel (e.g., number of threads)
+	 * @return Number of unique values, which are stored, in increasing order,
+	 * at the start of the array
+	 */
+	public static int sortUnique(long[] values, int size, ExecutorService executor, int numparts) {
+		sort(values, size, executor, numparts);
+		
+		int numunique = 0;
+		for(int i=0; i<size; i++) {
+			if(numunique == 0 || values[i] != values[numunique-1]) {
+				values[numunique++] = values[i];
+			}
+		}
+		
+		return numunique;
+	}
+	
+	private static void run(ExecutorService executor, List<Callable<Object>> tasks) {
+		try {
+			List<Future<Object>> futures = executor.invokeAll(tasks);
+			for(Future<Object> f:futures) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Task which merges two sorted runs, or sorts a run in place
+	 * if no destination is given
+	 */
+	private static class Merger implements Callable<Object> {
+		private final long[] src;
+		private final int lo;
+		private final int mid;
+		private final int hi;
+		private final long[] dst;
+		
+		public Merger(long[] src, int lo, int mid, int hi, long[] dst) {
+			this.src = src;
+			this.lo = lo;
+			this.mid = mid;
+			this.hi = hi;
+			this.dst = dst;
+		}
+		
+		public Object call() {
+			if(dst == null) {
+				Arrays.sort(src, lo, hi);
+				return null;
+			}
+			
+			int i = lo;
+			int j = mid;
+			int k = lo;
+			while(i < mid && j < hi) {
+				dst[k++] = src[i] <= src[j] ? src[i++] : src[j++];
+			}
+			
+			System.arraycopy(src, i, dst, k, mid-i);
+			k += mid-i;
+			System.arraycopy(src, j, dst, k, hi-j);
+			
+			return null;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import linqs.gaia.exception.ConfigurationException;
+
+/**
+ * R-MAT generation model based on:
+ * <p>
+ * Chakrabarti, D., Zhan, Y., and Faloutsos, C. 2004.
+ * R-MAT: A recursive model for graph mining.
+ * In Proceedings of the SIAM International Conference on Data Mining.
+ * <p>
+ * This is the stochastic Kronecker graph model with a 2x2 initiator matrix
+ * [a b; c d].  Each edge is generated independently by recursively picking
+ * one of the four quadrants of the adjacency matrix, with probabilities a, b, c and d,
+ * scale times.  The edges are generated in parallel as described in
+ * {@link BlockEdgeGenerator}, so the generated graph depends on the seed
+ * but not the number of threads.
+ * <p>
+ * 
+ *  Optional Parameters:
+ *  <UL>
+ *  <LI> graphclass-Full java class for the graph,
+ * instantiated using Dynamic.forConfigurableName.
+ * Defaults is {@link linqs.gaia.graph.datagraph.DataGraph}.
+ *  <LI> isdirected-If no, create a graph with undirected edges, where an undirected edge
+ *  is added between a-b if a->b and/or b->a is generated.  By default, create directed.
+ *  <LI> scale-Base 2 logarithm of the number of nodes, at most 30.  Default is 10.
+ *  <LI> edgefactor-Number of edges to generate per node.  Default is 16.
+ *  <LI> numedges-Number of edges to generate.  If specified, edgefactor is ignored.
+ *  The number of edges in the graph is lower once duplicate edges and self loops are removed.
+ *  <LI> a, b, c-Probabilities of the top left, top right and bottom left quadrants.
+ *  The probability of the bottom right quadrant is 1-a-b-c.
+ *  Defaults are .57, .19 and .19.
+ *  <LI> duplinks-If yes, allow duplicate links
+ *  (i.e., two directed edges have the same source to target).  The edges are then
+ *  not sorted and are added in the order they are generated.  Ignored if isdirected is no.
+ *  Default is no.
+ *  <LI> selfloops-If yes, keep edges whose source and target are the same node.
+ *  Default is no.
+ *  <LI> nodeschemaid-Schema id for nodes.  Default is rmatnode.
+ *  <LI> edgeschemaid-Schema id for edge.  Default is rmatedge.
+ *  <LI> graphschemaid-Schema id for graph.  Default is rmatgraph.
+ *  <LI> graphobjid-Object id for graph.  Default is g1.
+ *  <LI> seed-Random generator seed.  Default is 0.
+ *  <LI> numthreads-Number of threads to use when generating and sorting edges.
+ *  Default is the number of available processors.
+ *  <LI> sinkclass-If specified, the nodes and edges are written to the {@link linqs.gaia.graph.generator.sink.GeneratorSink}
+ *  instantiated using Dynamic.forConfigurableName
+ *  (e.g., sink:linqs.gaia.graph.generator.sink.SparseTabDelimSink) instead of being added
+ *  to the graph.  The returned graph only contains the schemas.
+ *  </UL>
+ */
+public class RMat extends BlockEdgeGenerator {
+	private static final int MAX_SCALE = 30;
+	
+	private int scale = 10;
+	private long numedges = 16L << 10;
+	private double a = .57;
+	private double b = .19;
+	private double c = .19;
+	
+	public RMat() {
+		super("rmatgraph", "rmatnode", "rmatedge", true);
+	}
+	
+	protected int initializeModel() {
+		if(this.hasParameter("scale")) {
+			scale = (int) this.getDoubleParameter("scale");
+			if(scale < 1 || scale > MAX_SCALE) {
+				throw new ConfigurationException("Invalid scale: "+scale);
+			}
+		}
+		
+		if(this.hasParameter("numedges")) {
+			numedges = (long) this.getDoubleParameter("numedges");
+		} else {
+			double edgefactor = 16;
+			if(this.hasParameter("edgefactor")) {
+				edgefactor = this.getDoubleParameter("edgefactor");
+			}
+			
+			numedges = (long) (edgefactor * (1L << scale));
+		}
+		
+		if(this.hasParameter("a")) {
+			a = this.getDoubleParameter("a");
+		}
+		
+		if(this.hasParameter("b")) {
+			b = this.getDoubleParameter("b");
+		}
+		
+		if(this.hasParameter("c")) {
+			c = this.getDoubleParameter("c");
+		}
+		
+		if(a < 0 || b < 0 || c < 0 || a+b+c > 1) {
+			throw new ConfigurationException("Invalid quadrant probabilities: a="+a
+					+" b="+b+" c="+c);
+		}
+		
+		return 1 << scale;
+	}
+	
+	protected long getNumEdges() {
+		return numedges;
+	}
+	
+	/**
+	 * Generate an edge by recursively picking a quadrant of the adjacency matrix
+	 * 
+	 * @param rand Random number generator
+	 * @return Encoded edge
+	 */
+	protected long generateEdge(SplitMixEngine rand) {
+		double ab = a+b;
+		double abc = ab+c;
+		int source = 0;
+		int target = 0;
+		for(int level=0; level<scale; level++) {
+			double u = rand.nextDouble();
+			source <<= 1;
+			target <<= 1;
+			if(u < a) {
+				// Top left quadrant
+			} else if(u < ab) {
+				target |= 1;
+			} else if(u < abc) {
+				source |= 1;
+			} else {
+				source |= 1;
+				target |= 1;
+			}
+		}
+		
+		return this.encodeEdge(source, target);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import umontreal.iro.lecuyer.rng.LFSR113;
+
+/**
+ * Utilities for deriving independent random number generator seeds
+ * from a single seed.  This allows generators to give each node,
+ * edge, or worker thread its own random number stream so that the
+ * generated output does not depend on the order in which they are
+ * processed or on the number of threads used.
+ * <p>
+ * Seeds are derived using the finalizer of the SplitMix64 generator
+ * (Steele, G. L., Lea, D., and Flood, C. H. 2014.
+ * Fast splittable pseudorandom number generators.
+ * OOPSLA '14).
+ * <p>
+ * SSJ LFSR113 streams created using the default constructor start from,
+ * and advance, a seed shared by all LFSR113 streams in the JVM.
+ * Generators should create them using {@link #newLFSR113Streams(int[], int)}
+ * or {@link #newLFSR113(int[])} so that generators running concurrently
+ * do not change each other's streams.
+ */
+public class SeedUtils {
+	// Increment of the SplitMix64 generator, also used by SplitMixEngine
+	static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	
+	/**
+	 * Derive the seed for the stream with the given index
+	 * 
+	 * @param seed Seed to derive from
+	 * @param index Index of the stream
+	 * @return Derived seed
+	 */
+	public static long deriveSeed(long seed, long index) {
+		return mix64(mix64(seed) + (index+1)*GOLDEN_GAMMA);
+	}
+	
+	/**
+	 * Convert a seed to a valid seed for an SSJ LFSR113 stream.
+	 * LFSR113 requires the four components of its seed to be
+	 * greater than 1, 7, 15 and 127, respectively.
+	 * 
+	 * @param seed Seed to convert
+	 * @return Seed for use with {@link umontreal.iro.lecuyer.rng.LFSR113#setSeed(int[])}
+	 */
+	public static int[] lfsr113Seed(long seed) {
+		long a = mix64(seed);
+		long b = mix64(seed + GOLDEN_GAMMA);
+		
+		return new int[]{(int) (a >>> 34) + 2,
+				(int) ((a << 32) >>> 34) + 8,
+				(int) (b >>> 34) + 16,
+				(int) ((b << 32) >>> 34) + 128};
+	}
+	
+	/**
+	 * Create the LFSR113 streams which would be created by calling
+	 * LFSR113.setPackageSeed(packageseed) followed by new LFSR113() numstreams times.
+	 * This is done holding the lock on LFSR113.class, so the streams
+	 * do not depend on other threads creating LFSR113 streams using these methods.
+	 * 
+	 * @param packageseed Package seed to create the streams from
+	 * @param numstreams Number of streams to create
+	 * @return Created streams
+	 */
+	public static LFSR113[] newLFSR113Streams(int[] packageseed, int numstreams) {
+		LFSR113[] streams = new LFSR113[numstreams];
+		synchronized(LFSR113.class) {
+			LFSR113.setPackageSeed(packageseed);
+			for(int i=0; i<numstreams; i++) {
+				streams[i] = new LFSR113();
+			}
+		}
+		
+		return streams;
+	}
+	
+	/**
+	 * Create an LFSR113 stream with the given seed
+	 * 
+	 * @param seed Seed of the stream
+	 * @return Created stream
+	 */
+	public static LFSR113 newLFSR113(int[] seed) {
+		LFSR113 stream;
+		synchronized(LFSR113.class) {
+			stream = new LFSR113();
+		}
+		
+		stream.setSeed(seed);
+		
+		return stream;
+	}
+	
+	/**
+	 * Mix the bits of the value
+	 * 
+	 * @param z Value
+	 * @return Mixed value
+	 */
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,350 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * Sampler for the sleep times of {@link MicroEvolution}, drawn from a discrete
+ * power-law with exponent alpha and an exponential cutoff of beta*degree,
+ * using the rejection method of {@link #sampleRejection(double)}.
+ * <p>
+ * Each attempt of the rejection method draws x from a discrete exponential,
+ * with probability pE(x)=exp(-c(x-1))-exp(-cx), and accepts it with probability x^-alpha.
+ * If rejected, it draws x from a discrete power-law, with probability
+ * pP(x)=x^-(1-alpha)-(x+1)^-(1-alpha), and accepts it with probability exp(-c).
+ * The returned sleep time therefore has a probability proportional to
+ * <pre>
+ * pE(x)*x^-alpha + (1-A)*exp(-c)*pP(x)
+ * </pre>
+ * where A is the sum of pE(x)*x^-alpha over all x.
+ * <p>
+ * {@link #sample(int)} draws from the same distribution using an {@link AliasTable}
+ * over the sleep times 1 to the horizon, and one entry for all larger sleep times,
+ * built once for each degree up to a maximum degree.
+ * Larger sleep times are drawn exactly from the tail of either the exponential
+ * or the power-law, in proportion to their contribution.
+ * The rejection method is used for larger degrees, and for parameters where
+ * the table does not apply (i.e., alpha not between 0 and 1 or a very small cutoff).
+ * Given the same random number generator, the two methods return
+ * different sleep times, from the same distribution.
+ * <p>
+ * The tables do not depend on the random number generator, so samplers created
+ * using {@link #SleepTimeSampler(SleepTimeSampler, RandomEngine)} share the tables
+ * of another sampler.  Each table is built once, and samplers sharing tables
+ * can draw sleep times concurrently, each using its own random number generator.
+ */
+public class SleepTimeSampler {
+	/**
+	 * Default number of sleep times stored individually in each table
+	 */
+	public static final int DEFAULT_HORIZON = 1024;
+	
+	/**
+	 * Default largest degree for which a table is built
+	 */
+	public static final int DEFAULT_MAX_TABLE_DEGREE = 256;
+	
+	// Maximum number of terms summed for the exponential tail of a table
+	private static final int MAX_TAIL_TERMS = 1 << 18;
+	
+	private RandomEngine generator;
+	private double alpha;
+	private double beta;
+	private int horizon;
+	private int maxtabledegree;
+	
+	// Tables shared with other samplers, and those this sampler already got from them
+	private TableSet tableset;
+	private Table[] tables;
+	private boolean[] istabled;
+	
+	/**
+	 * Create a sampler using the default horizon and maximum table degree
+	 * 
+	 * @param generator Random number generator
+	 * @param alpha Power-law exponent
+	 * @param beta Exponential cutoff per degree
+	 */
+	public SleepTimeSampler(RandomEngine generator, double alpha, double beta) {
+		this(generator, alpha, beta, DEFAULT_HORIZON, DEFAULT_MAX_TABLE_DEGREE);
+	}
+	
+	/**
+	 * Create a sampler
+	 * 
+	 * @param generator Random number generator
+	 * @param alpha Power-law exponent
+	 * @param beta Exponential cutoff per degree
+	 * @param horizon Number of sleep times stored individually in each table
+	 * @param maxtabledegree Largest degree for which a table is built.
+	 * If 0, the rejection method is always used.
+	 */
+	public SleepTimeSampler(RandomEngine generator, double alpha, double beta,
+			int horizon, int maxtabledegree) {
+		this.generator = generator;
+		this.alpha = alpha;
+		this.beta = beta;
+		this.horizon = horizon;
+		this.maxtabledegree = maxtabledegree;
+		this.tableset = new TableSet(alpha, beta, horizon, maxtabledegree);
+		this.tables = new Table[maxtabledegree+1];
+		this.istabled = new boolean[maxtabledegree+1];
+	}
+	
+	/**
+	 * Create a sampler with the same parameters as another sampler,
+	 * which shares its tables but draws sleep times using its own random number generator
+	 * 
+	 * @param sampler Sampler to share the tables of
+	 * @param generator Random number generator
+	 */
+	public SleepTimeSampler(SleepTimeSampler sampler, RandomEngine generator) {
+		this.generator = generator;
+		this.alpha = sampler.alpha;
+		this.beta = sampler.beta;
+		this.horizon = sampler.horizon;
+		this.maxtabledegree = sampler.maxtabledegree;
+		this.tableset = sampler.tableset;
+		this.tables = new Table[maxtabledegree+1];
+		this.istabled = new boolean[maxtabledegree+1];
+	}
+	
+	/**
+	 * Set the random number generator used to draw sleep times.
+	 * Tables already built are kept, since they do not depend on the generator.
+	 * 
+	 * @param generator Random number generator
+	 */
+	public void setGenerator(RandomEngine generator) {
+		this.generator = generator;
+	}
+	
+	/**
+	 * @return Largest degree for which a table is built, or 0 if the rejection method is always used
+	 */
+	public int getMaxTableDegree() {
+		return maxtabledegree;
+	}
+	
+	/**
+	 * Draw a sleep time for a node with the given degree,
+	 * i.e., with an exponential cutoff of beta*degree.
+	 * 
+	 * @param degree Degree of node
+	 * @return Sleep time
+	 */
+	public int sample(int degree) {
+		Table table = null;
+		if(degree >= 1 && degree <= maxtabledegree) {
+			if(!istabled[degree]) {
+				tables[degree] = tableset.getTable(degree);
+				istabled[degree] = true;
+			}
+			
+			table = tables[degree];
+		}
+		
+		if(table == null) {
+			return this.sampleRejection(beta*degree);
+		}
+		
+		int i = table.alias.sample(generator);
+		if(i < horizon) {
+			return i+1;
+		}
+		
+		if(generator.raw()*(table.exponentialtail+table.powerlawtail) < table.exponentialtail) {
+			// Draw from the exponential conditioned on being beyond the horizon,
+			// which is the horizon plus an exponential, and accept with
+			// probability proportional to x^-alpha
+			double cutoff = table.cutoff;
+			while(true) {
+				int x = (int) Math.floor(horizon+1-(1/cutoff)*Math.log(1-generator.raw()));
+				if(generator.raw() < Math.pow((double) x/(horizon+1), -alpha)) {
+					return x;
+				}
+			}
+		}
+		
+		// Draw from the power-law conditioned on being beyond the horizon
+		double u = generator.raw()*Math.pow(horizon+1, -(1-alpha));
+		int x = (int) Math.floor(Math.pow(u, -1/(1-alpha)));
+		
+		return Math.max(x, horizon+1);
+	}
+	
+	/**
+	 * This function approximates the discrete by getting a random number from either the exponential or
+	 * the power-law and then rejects according to the difference with the desired power-law distribution
+	 * with an exponential cutoff.
+	 * <p>
+	 * (Clauset's paper suggests always taking the exponential and accepting according to the difference 
+	 * with the power-law BUT this doesn't work well at low node degrees/cutoffs).
+	 * 
+	 * @param cutoff Exponential cutoff
+	 * @return Sleep time
+	 */
+	public int sampleRejection(double cutoff){
+		double xmin=1; 
+		double result=0;
+		double reject=1;
+		while (reject==1){
+			// gets a random number from the exponential distribution
+			result = contExponential(cutoff);
+			// accepts it with a probability that is
+			// 1-(the difference between the exponential and the desired distribution)
+			if (generator.raw() < Math.pow(result/xmin,-alpha))
+				reject=0;
+			// gets a random number from the power-law distribution
+			if (reject==1){
+				result=contPowerLaw(alpha);
+				// accepts it with a probability that is
+				// 1-(the difference between the power-law and the desired distribution)
+				if (generator.raw() < Math.pow(Math.E, -cutoff))
+					reject=0;
+			}
+		}
+		
+		return (int) result;
+	}
+	
+	/**
+	 * This function approximates the random number generation from a discrete power-law 
+	 * distribution quite well (from Clauset's paper)
+	 * 
+	 * @param alpha
+	 * @return
+	 */
+	private int contPowerLaw(double alpha){
+		double u = generator.raw();
+		int xmin=1; 
+		return (int) Math.floor(((xmin-1/2)*Math.pow(1-u,-1/(1-alpha))+1/2));
+	}
+	
+	private int contExponential(double exponent){
+		int xmin=1; 
+		double u = generator.raw();
+		return (int) Math.floor(xmin-(1/exponent)*Math.log(1-u));
+	}
+	
+	/**
+	 * Build the table for the given cutoff
+	 * 
+	 * @param alpha Power-law exponent
+	 * @param horizon Number of sleep times stored individually in the table
+	 * @param cutoff Exponential cutoff
+	 * @return Table, or null if the rejection method must be used
+	 */
+	private static Table buildTable(double alpha, int horizon, double cutoff) {
+		if(!(alpha > 0 && alpha < 1) || !(cutoff > 0) || Double.isInfinite(cutoff)) {
+			return null;
+		}
+		
+		// Probability of each value of the exponential, times its acceptance probability
+		double[] weights = new double[horizon+1];
+		double ratio = Math.exp(-cutoff);
+		double pe = -Math.expm1(-cutoff);
+		double accepted = 0;
+		for(int x=1; x<=horizon; x++) {
+			weights[x-1] = pe*Math.pow(x, -alpha);
+			accepted += weights[x-1];
+			pe *= ratio;
+		}
+		
+		double exponentialtail = 0;
+		long x = horizon+1;
+		while(pe > 1e-17*accepted) {
+			if(x-horizon > MAX_TAIL_TERMS) {
+				// Cutoff too small to sum the tail
+				return null;
+			}
+			
+			exponentialtail += pe*Math.pow(x, -alpha);
+			pe *= ratio;
+			x++;
+		}
+		
+		accepted += exponentialtail;
+		
+		// Probability of each value of the power-law, times the probability
+		// the exponential was rejected and the power-law accepted
+		double powerlaw = (1-accepted)*ratio;
+		for(int y=1; y<=horizon; y++) {
+			weights[y-1] += powerlaw*(Math.pow(y, -(1-alpha)) - Math.pow(y+1, -(1-alpha)));
+		}
+		
+		double powerlawtail = powerlaw*Math.pow(horizon+1, -(1-alpha));
+		weights[horizon] = exponentialtail + powerlawtail;
+		
+		Table table = new Table();
+		table.cutoff = cutoff;
+		table.alias = new AliasTable(weights);
+		table.exponentialtail = exponentialtail;
+		table.powerlawtail = powerlawtail;
+		
+		return table;
+	}
+	
+	/**
+	 * Tables for each degree, shared by samplers with the same parameters
+	 * and built when first needed by any of them
+	 */
+	private static class TableSet {
+		private double alpha;
+		private double beta;
+		private int horizon;
+		private Table[] tables;
+		private boolean[] istabled;
+		
+		public TableSet(double alpha, double beta, int horizon, int maxtabledegree) {
+			this.alpha = alpha;
+			this.beta = beta;
+			this.horizon = horizon;
+			this.tables = new Table[maxtabledegree+1];
+			this.istabled = new boolean[maxtabledegree+1];
+		}
+		
+		/**
+		 * Get the table for the given degree, building it if needed
+		 * 
+		 * @param degree Degree of node
+		 * @return Table, or null if the rejection method must be used
+		 */
+		public synchronized Table getTable(int degree) {
+			if(!istabled[degree]) {
+				tables[degree] = buildTable(alpha, horizon, beta*degree);
+				istabled[degree] = true;
+			}
+			
+			return tables[degree];
+		}
+	}
+	
+	/**
+	 * Alias table for one cutoff, with the weights of the two tails
+	 * beyond the horizon
+	 */
+	private static class Table {
+		private double cutoff;
+		private AliasTable alias;
+		private double exponentialtail;
+		private double powerlawtail;
+	}
+}
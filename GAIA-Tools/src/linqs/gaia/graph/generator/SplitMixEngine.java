@@ -0,0 +1,65 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator;
+
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * SplitMix64 random number generator
+ * (Steele, G. L., Lea, D., and Flood, C. H. 2014.
+ * Fast splittable pseudorandom number generators.
+ * OOPSLA '14).
+ * <p>
+ * The state is a single long, so reseeding the generator is cheap.
+ * This allows generators to reseed it for each node, using
+ * a seed from {@link SeedUtils#deriveSeed(long, long)}, where constructing
+ * a generator with a large state (e.g., MersenneTwister) for each node would not be.
+ */
+public class SplitMixEngine extends RandomEngine {
+	private static final long serialVersionUID = 1L;
+	
+	private long state;
+	
+	/**
+	 * Create a generator with the given seed
+	 * 
+	 * @param seed Seed
+	 */
+	public SplitMixEngine(long seed) {
+		this.state = seed;
+	}
+	
+	/**
+	 * Reseed the generator
+	 * 
+	 * @param seed Seed
+	 */
+	public void setSeed(long seed) {
+		this.state = seed;
+	}
+	
+	public long nextLong() {
+		state += SeedUtils.GOLDEN_GAMMA;
+		return SeedUtils.mix64(state);
+	}
+	
+	public int nextInt() {
+		return (int) (this.nextLong() >>> 32);
+	}
+}
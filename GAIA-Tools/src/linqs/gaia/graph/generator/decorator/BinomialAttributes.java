@@ -18,8 +18,16 @@
 */
 package linqs.gaia.graph.generator.decorator;
 
+import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import umontreal.iro.lecuyer.probdist.BinomialDist;
 import umontreal.iro.lecuyer.randvar.BinomialGen;
@@ -30,17 +38,30 @@ import linqs.gaia.feature.CategFeature;
 import linqs.gaia.feature.Feature;
 import linqs.gaia.feature.explicit.ExplicitCateg;
 import linqs.gaia.feature.explicit.ExplicitNum;
+import linqs.gaia.feature.explicit.ExplicitString;
 import linqs.gaia.feature.schema.Schema;
 import linqs.gaia.feature.values.CategValue;
 import linqs.gaia.feature.values.FeatureValue;
 import linqs.gaia.feature.values.NumValue;
+import linqs.gaia.feature.values.StringValue;
 import linqs.gaia.graph.Graph;
 import linqs.gaia.graph.GraphItem;
+import linqs.gaia.graph.generator.SeedUtils;
+import linqs.gaia.graph.generator.SplitMixEngine;
 import linqs.gaia.util.UnmodifiableList;
 
 /**
  * Generate attributes based on labels (explicit categorical features).
  * The attributes are set using a binomial distribution.
+ * <p>
+ * Each observed word is drawn, with probability attrnoise, uniformly from the words
+ * not yet observed for the graph item and, otherwise, from the binomial distribution
+ * (modulo vocabsize) restricted to the words not yet observed.  A word is first drawn
+ * from the full distribution until a word not yet observed is drawn, and, after
+ * a few words already observed are drawn, it is drawn directly from the remaining words.
+ * The time per word is therefore bounded even when numobs is close to vocabsize.
+ * If none of the remaining words has a non-zero binomial probability, the word is drawn
+ * uniformly from the remaining words instead.
  * 
  * Required Parameters:
  * <UL>
@@ -51,10 +72,24 @@ import linqs.gaia.util.UnmodifiableList;
  * Optional Parameters:
  * <UL>
  * <LI> vocabsize-Number of words to generate. Default is 5.
- * <LI> numobs-Number of observed words.  Default is 2.
+ * <LI> numobs-Number of observed words, at most vocabsize.  Default is 2.
  * <LI> attrnoise-Probability of noise over the words.  Default is .25.
  * <LI> attrprefix-Prefix to use in the feature name.  Default is "w".
  * <LI> seed-Random number generator seed.  Default is 0.
+ * <LI> sparse-If yes, instead of adding a numeric feature for every word,
+ * a single string feature, with the attribute prefix as its id, is added and set to
+ * the comma delimited list of the observed words and their counts, in increasing order
+ * of word (e.g., w3:1,w17:1 for attribute prefix w).  The memory and time used per
+ * graph item then depend on numobs instead of vocabsize.  The observed words are the same
+ * as those set using numeric features.  This is only a serialization of the words
+ * (e.g., for writing out large graphs).  Nothing in this library parses the string back
+ * into word counts, so models which use numeric features (e.g., WekaClassifier, which only
+ * expands numeric and composite features) cannot use it.  Default is no.
+ * <LI> numthreads-If specified, the words of the graph items are drawn in parallel
+ * using this number of threads.  Each graph item uses its own random number generator,
+ * seeded from the seed and a hash of the object id of the item, so the attributes
+ * of an item do not depend on the order of the graph items or the number of threads.
+ * The attributes differ from those set without this parameter.
  * </UL>
  * 
  * @author mbilgic
@@ -70,6 +105,30 @@ public class BinomialAttributes extends BaseConfigurable implements Decorator {
 	private int numlabels = -1;
 	private String attrprefix = "w";
 	private int seed = 0;
+	private boolean sparse = false;
+	private int numthreads = 0;
+	
+	// Maximum number of graph items, and of their observed words, drawn in parallel
+	// before their attributes are set.  The words of a chunk fit in WORD_BUDGET ints,
+	// unless numobs alone is larger, in which case each chunk has a single graph item.
+	private static final int MAX_CHUNK_ITEMS = 1 << 16;
+	private static final int WORD_BUDGET = 1 << 20;
+	// Number of words already observed drawn before drawing from the remaining words
+	private static final int MAX_REJECTIONS = 16;
+	
+	// Binomial distribution and generator for each label,
+	// using the stream reseeded for every graph item
+	private BinomialDist[] dists;
+	private BinomialGen[] bigens;
+	// Probability of each word in the binomial distribution (modulo vocabsize)
+	// for each label, and the words with a non-zero probability
+	private double[][] wordprobs;
+	private int[][] wordsupports;
+	// Count of each word, which is only non-zero for the words of the current graph item
+	private int[] wordCounts;
+	private int[] words;
+	private int[] sortedwords;
+	private SequentialRandom seqrand = new SequentialRandom();
 	
 	public void decorate(Graph g) {
 		// Set parameters
@@ -84,6 +143,11 @@ public class BinomialAttributes extends BaseConfigurable implements Decorator {
 			this.numobs = (int) this.getDoubleParameter("numobs");
 		}
 		
+		if(this.numobs > this.vocabsize) {
+			throw new ConfigurationException("numobs must be at most vocabsize: numobs="
+					+this.numobs+" vocabsize="+this.vocabsize);
+		}
+		
 		if(this.hasParameter("attrnoise")) {
 			this.attrnoise = this.getDoubleParameter("attrnoise");
 		}
@@ -95,8 +159,28 @@ public class BinomialAttributes extends BaseConfigurable implements Decorator {
 		if(this.hasParameter("seed")) {
 			this.seed = (int) this.getDoubleParameter("seed");
 		}
+		
+		if(this.hasParameter("sparse", "yes")) {
+			this.sparse = true;
+		} else if(this.hasParameter("sparse", "no")) {
+			this.sparse = false;
+		} else if(this.hasParameter("sparse")) {
+			throw new ConfigurationException("Invalid sparse option: "
+					+this.getStringParameter("sparse"));
+		}
+		
+		if(this.hasParameter("numthreads")) {
+			this.numthreads = (int) this.getDoubleParameter("numthreads");
+			if(this.numthreads < 1) {
+				throw new ConfigurationException("Invalid numthreads: "+this.numthreads);
+			}
+		}
+		
 		Random rand = new Random(this.seed);
 		
+		// Stream used for the binomial distribution, reseeded for every graph item
+		LFSR113 stream = SeedUtils.newLFSR113(SeedUtils.lfsr113Seed(this.seed));
+		
 		// Get the label feature
 		Schema schema = g.getSchema(schemaid);
 		Feature f = schema.getFeature(targetfeatureid);
@@ -108,68 +192,440 @@ public class BinomialAttributes extends BaseConfigurable implements Decorator {
 		numlabels = cats.size();
 		
 		// Update schema to support new attributes
-		int totalwords = vocabsize;
-		for(int i=0;i<totalwords;i++){
-			// Add numeric features for the different words to add
-			schema.addFeature(attrprefix+i, new ExplicitNum(new NumValue(0.0)));
+		if(this.sparse) {
+			// Add a single feature for the observed words
+			schema.addFeature(attrprefix, new ExplicitString());
+		} else {
+			int totalwords = vocabsize;
+			for(int i=0;i<totalwords;i++){
+				// Add numeric features for the different words to add
+				schema.addFeature(attrprefix+i, new ExplicitNum(new NumValue(0.0)));
+			}
 		}
 		g.updateSchema(schemaid, schema);
 		
+		// The binomial distribution only depends on the label, so it is only created once per label
+		dists = new BinomialDist[numlabels];
+		bigens = new BinomialGen[numlabels];
+		for(int c=0;c<numlabels;c++){
+			double probSuccess = (1.0+c)/(1+numlabels);
+			dists[c] = new BinomialDist(vocabsize, probSuccess);
+			bigens[c] = new BinomialGen(stream, dists[c]);
+		}
+		
+		this.initWordProbs();
+		
+		wordCounts = new int[vocabsize];
+		words = new int[numobs];
+		sortedwords = new int[numobs];
+		
 		// Go over all graph items and add attributes
 		Iterator<GraphItem> gitr = g.getGraphItems(schemaid);
+		if(this.numthreads > 0) {
+			this.decorateInParallel(gitr, cats);
+			return;
+		}
+		
 		while(gitr.hasNext()) {
 			GraphItem gi = gitr.next();
-			FeatureValue fvalue = gi.getFeatureValue(targetfeatureid);
-			if(fvalue.equals(FeatureValue.UNKNOWN_VALUE)) {
-				throw new ConfigurationException("All labels must be known: "+
-						gi+"."+targetfeatureid+"="+fvalue);
+			int labelindex = this.getLabelIndex(gi, cats);
+			genAttributesBinomial(gi, labelindex, rand, stream);
+		}
+	}
+	
+	/**
+	 * Draw the words of the graph items in parallel, in chunks of graph items,
+	 * and set the attributes of each chunk once its words are drawn
+	 * 
+	 * @param gitr Graph items to generate attributes for
+	 * @param cats Labels
+	 */
+	private void decorateInParallel(Iterator<GraphItem> gitr, UnmodifiableList<String> cats) {
+		// Offsets of the words of the chunk are at most max(WORD_BUDGET, numobs), so fit in an int
+		int chunksize = Math.max(1, Math.min(MAX_CHUNK_ITEMS, WORD_BUDGET/Math.max(numobs, 1)));
+		GraphItem[] items = new GraphItem[chunksize];
+		int[] labels = new int[chunksize];
+		int[] chunkwords = new int[chunksize*numobs];
+		ItemWorker[] workers = new ItemWorker[this.numthreads];
+		for(int w=0;w<workers.length;w++){
+			workers[w] = new ItemWorker(items, labels, chunkwords);
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(this.numthreads);
+		try {
+			while(gitr.hasNext()) {
+				int numitems = 0;
+				while(numitems<chunksize && gitr.hasNext()) {
+					GraphItem gi = gitr.next();
+					items[numitems] = gi;
+					labels[numitems] = this.getLabelIndex(gi, cats);
+					numitems++;
+				}
+				
+				List<Future<Object>> futures = new ArrayList<Future<Object>>(workers.length);
+				for(int w=0;w<workers.length;w++){
+					workers[w].first = (int) ((long) numitems*w/workers.length);
+					workers[w].last = (int) ((long) numitems*(w+1)/workers.length);
+					futures.add(executor.submit(workers[w]));
+				}
+				
+				try {
+					for(Future<Object> f:futures) {
+						f.get();
+					}
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+				
+				for(int i=0;i<numitems;i++){
+					this.setAttributes(items[i], chunkwords, i*numobs);
+					items[i] = null;
+				}
 			}
-			
-			int labelindex = cats.indexOf(((CategValue) fvalue).getCategory());
-			genAttributesBinomial(gi, labelindex, rand);
+		} finally {
+			executor.shutdown();
 		}
 	}
 	
+	/**
+	 * Get the index of the label of a graph item
+	 * 
+	 * @param gi Graph item
+	 * @param cats Labels
+	 * @return Index of the label
+	 */
+	private int getLabelIndex(GraphItem gi, UnmodifiableList<String> cats) {
+		FeatureValue fvalue = gi.getFeatureValue(targetfeatureid);
+		if(fvalue.equals(FeatureValue.UNKNOWN_VALUE)) {
+			throw new ConfigurationException("All labels must be known: "+
+					gi+"."+targetfeatureid+"="+fvalue);
+		}
+		
+		return cats.indexOf(((CategValue) fvalue).getCategory());
+	}
+	
+	/**
+	 * Get the index of the random number generator of a graph item
+	 * 
+	 * @param gi Graph item
+	 * @return 64 bit hash of the object id of the graph item
+	 */
+	private static long getItemIndex(GraphItem gi) {
+		String objid = gi.getID().getObjID();
+		long hash = 1125899906842597L;
+		for(int i=0;i<objid.length();i++){
+			hash = 31*hash + objid.charAt(i);
+		}
+		
+		return hash;
+	}
+	
 	/**
 	 * Generate binomial attributes
 	 * 
 	 * @param gi Graph item to generate attribute for
 	 * @param c Label index
 	 * @param rand Random number generator
+	 * @param stream Stream to use for the binomial distribution
 	 */
-	private void genAttributesBinomial(GraphItem gi, int c, Random rand) {
-		double probSuccess = (1.0+c)/(1+numlabels);
-		
-		// Set seed for synthetic data
-		LFSR113.setPackageSeed(new int[]{rand.nextInt()+2,
+	private void genAttributesBinomial(GraphItem gi, int c, Random rand, LFSR113 stream) {
+		// Set seed for synthetic data.
+		// Note: This is the stream new LFSR113() would create after setting the package seed
+		// to the same seed, without changing the package seed shared by all LFSR113 streams.
+		stream.setSeed(new int[]{rand.nextInt()+2,
 				rand.nextInt()+8,
 				rand.nextInt()+16,
 				rand.nextInt()+128});
-		BinomialGen bigen = new BinomialGen(new LFSR113(), new BinomialDist(vocabsize, probSuccess));
-		int[] wordCounts = new int[vocabsize];
-
+		seqrand.rand = rand;
+		seqrand.stream = stream;
+		this.drawWords(c, seqrand, wordCounts, words, 0, sortedwords);
+		
+		this.setAttributes(gi, words, 0);
+	}
+	
+	/**
+	 * Draw the observed words of a graph item
+	 * 
+	 * @param c Label index
+	 * @param rand Random numbers of the graph item
+	 * @param counts Counts of the words, which must all be zero, and are zero again on return
+	 * @param itemwords Array to store the observed words in
+	 * @param offset Index of the first observed word in the array
+	 * @param sorted Array used to sort the observed words
+	 */
+	private void drawWords(int c, ItemRandom rand, int[] counts, int[] itemwords, int offset, int[] sorted) {
 		for(int i=0;i<numobs;i++){
-			double r = rand.nextDouble();
-			if(r<=attrnoise) {
-				int word = 0;
-				do{
+			int word = -1;
+			if(rand.nextDouble()<=attrnoise) {
+				for(int j=0;j<MAX_REJECTIONS && word<0;j++){
 					word = rand.nextInt(vocabsize);
-				} while(wordCounts[word]!=0);
-
-				wordCounts[word]++;
+					if(counts[word]!=0) {
+						word = -1;
+					}
+				}
 			} else {
-				int word = 0;
-
-				do {
-					word = bigen.nextInt()%vocabsize;
-				} while(wordCounts[word]!=0);
-
-				wordCounts[word]++;
+				for(int j=0;j<MAX_REJECTIONS && word<0;j++){
+					word = rand.nextBinomial(c)%vocabsize;
+					if(counts[word]!=0) {
+						word = -1;
+					}
+				}
+				
+				if(word<0) {
+					word = this.pickRemainingBinomial(c, counts, rand.nextBinomialDouble());
+				}
+			}
+			
+			if(word<0) {
+				word = pickRemainingUniform(rand.nextInt(vocabsize-i), itemwords, offset, i, sorted);
+			}
+			
+			counts[word]++;
+			itemwords[offset+i] = word;
+		}
+		
+		for(int i=0;i<numobs;i++){
+			counts[itemwords[offset+i]] = 0;
+		}
+	}
+	
+	/**
+	 * Compute the probability of each word in the binomial distribution, modulo vocabsize,
+	 * of each label
+	 */
+	private void initWordProbs() {
+		wordprobs = new double[numlabels][vocabsize];
+		wordsupports = new int[numlabels][];
+		for(int c=0;c<numlabels;c++){
+			for(int k=0;k<=vocabsize;k++){
+				wordprobs[c][k%vocabsize] += dists[c].prob(k);
+			}
+			
+			int numsupport = 0;
+			int[] support = new int[vocabsize];
+			for(int w=0;w<vocabsize;w++){
+				if(wordprobs[c][w] > 0) {
+					support[numsupport++] = w;
+				}
+			}
+			
+			wordsupports[c] = Arrays.copyOf(support, numsupport);
+		}
+	}
+	
+	/**
+	 * Draw a word from the binomial distribution of a label restricted to the words
+	 * not yet observed.  This takes time linear in the number of words
+	 * with a non-zero probability.
+	 * 
+	 * @param c Label index
+	 * @param counts Counts of the words, which are non-zero for the observed words
+	 * @param u Uniform random number between 0 and 1
+	 * @return Word, or -1 if none of the remaining words has a non-zero probability
+	 */
+	private int pickRemainingBinomial(int c, int[] counts, double u) {
+		double[] probs = wordprobs[c];
+		int[] support = wordsupports[c];
+		double remaining = 0;
+		for(int w:support) {
+			if(counts[w]==0) {
+				remaining += probs[w];
+			}
+		}
+		
+		if(remaining<=0) {
+			return -1;
+		}
+		
+		double threshold = u*remaining;
+		int word = -1;
+		for(int w:support) {
+			if(counts[w]==0) {
+				word = w;
+				threshold -= probs[w];
+				if(threshold<0) {
+					break;
+				}
 			}
 		}
 		
-		for(int i=0;i<vocabsize;i++){
-			gi.setFeatureValue(attrprefix+i, new NumValue(0.0 + wordCounts[i]));
+		return word;
+	}
+	
+	/**
+	 * Get a word not yet observed, given its index among the words not yet observed
+	 * 
+	 * @param k Index of the word among the words not yet observed
+	 * @param itemwords Array containing the observed words
+	 * @param offset Index of the first observed word in the array
+	 * @param numchosen Number of observed words
+	 * @param sorted Array used to sort the observed words
+	 * @return Word
+	 */
+	private static int pickRemainingUniform(int k, int[] itemwords, int offset, int numchosen, int[] sorted) {
+		System.arraycopy(itemwords, offset, sorted, 0, numchosen);
+		Arrays.sort(sorted, 0, numchosen);
+		int word = k;
+		for(int i=0;i<numchosen && sorted[i]<=word;i++){
+			word++;
+		}
+		
+		return word;
+	}
+	
+	/**
+	 * Set the attributes of a graph item
+	 * 
+	 * @param gi Graph item
+	 * @param itemwords Array containing the observed words of the graph item
+	 * @param offset Index of the first observed word of the graph item in the array
+	 */
+	private void setAttributes(GraphItem gi, int[] itemwords, int offset) {
+		for(int i=0;i<numobs;i++){
+			wordCounts[itemwords[offset+i]]++;
+		}
+		
+		if(this.sparse) {
+			Arrays.sort(itemwords, offset, offset+numobs);
+			StringBuilder sb = new StringBuilder();
+			for(int i=0;i<numobs;i++){
+				int word = itemwords[offset+i];
+				if(i>0 && word==itemwords[offset+i-1]) {
+					continue;
+				}
+				
+				if(i>0) {
+					sb.append(',');
+				}
+				
+				sb.append(attrprefix).append(word).append(':').append(wordCounts[word]);
+			}
+			
+			gi.setFeatureValue(attrprefix, new StringValue(sb.toString()));
+		} else {
+			for(int i=0;i<vocabsize;i++){
+				gi.setFeatureValue(attrprefix+i, new NumValue(0.0 + wordCounts[i]));
+			}
+		}
+		
+		// Only clear the counts of the observed words
+		for(int i=0;i<numobs;i++){
+			wordCounts[itemwords[offset+i]] = 0;
+		}
+	}
+	
+	/**
+	 * Worker which draws the words of a range of the graph items of a chunk,
+	 * reseeding its random number generator for each graph item
+	 */
+	private class ItemWorker implements Callable<Object> {
+		private GraphItem[] items;
+		private int[] labels;
+		private int[] chunkwords;
+		private int[] counts = new int[vocabsize];
+		private int[] sorted = new int[numobs];
+		private SplitMixEngine engine = new SplitMixEngine(0);
+		private SplitMixRandom itemrand = new SplitMixRandom(engine);
+		private int first = 0;
+		private int last = 0;
+		
+		public ItemWorker(GraphItem[] items, int[] labels, int[] chunkwords) {
+			this.items = items;
+			this.labels = labels;
+			this.chunkwords = chunkwords;
+		}
+		
+		public Object call() {
+			for(int i=first;i<last;i++){
+				engine.setSeed(SeedUtils.deriveSeed(seed, getItemIndex(items[i])));
+				drawWords(labels[i], itemrand, counts, chunkwords, i*numobs, sorted);
+			}
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * Random numbers used to draw the observed words of a graph item
+	 */
+	private interface ItemRandom {
+		/**
+		 * @return Uniform random number between 0 and 1
+		 */
+		double nextDouble();
+		
+		/**
+		 * @param n Number of values
+		 * @return Uniform random int between 0 and n-1
+		 */
+		int nextInt(int n);
+		
+		/**
+		 * @param c Label index
+		 * @return Draw from the binomial distribution of the label
+		 */
+		int nextBinomial(int c);
+		
+		/**
+		 * @return Uniform random number between 0 and 1 used to draw from
+		 * the binomial distribution restricted to the words not yet observed
+		 */
+		double nextBinomialDouble();
+	}
+	
+	/**
+	 * Random numbers of the sequential path, which draws uniform numbers
+	 * from a single generator shared by all graph items and binomial draws
+	 * from a stream reseeded for every graph item
+	 */
+	private class SequentialRandom implements ItemRandom {
+		private Random rand;
+		private LFSR113 stream;
+		
+		public double nextDouble() {
+			return rand.nextDouble();
+		}
+		
+		public int nextInt(int n) {
+			return rand.nextInt(n);
+		}
+		
+		public int nextBinomial(int c) {
+			return bigens[c].nextInt();
+		}
+		
+		public double nextBinomialDouble() {
+			return stream.nextDouble();
+		}
+	}
+	
+	/**
+	 * Random numbers of the parallel path, which draws all its numbers
+	 * from the generator of the graph item
+	 */
+	private class SplitMixRandom implements ItemRandom {
+		private SplitMixEngine engine;
+		
+		public SplitMixRandom(SplitMixEngine engine) {
+			this.engine = engine;
+		}
+		
+		public double nextDouble() {
+			return engine.nextDouble();
+		}
+		
+		public int nextInt(int n) {
+			return Math.min((int) (engine.nextDouble()*n), n-1);
+		}
+		
+		public int nextBinomial(int c) {
+			return dists[c].inverseFInt(engine.nextDouble());
+		}
+		
+		public double nextBinomialDouble() {
+			return engine.nextDouble();
 		}
 	}
 }
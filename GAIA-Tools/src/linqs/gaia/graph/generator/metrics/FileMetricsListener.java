@@ -0,0 +1,147 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator.metrics;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import linqs.gaia.configurable.BaseConfigurable;
+import linqs.gaia.exception.ConfigurationException;
+
+/**
+ * Listener which appends the metrics of a generator to a file
+ * at the start of generation, at every report and at the end of generation.
+ * <p>
+ * In CSV format, a header is written followed by one line per report.
+ * In JSON format, one JSON object is written per line and
+ * histograms also include the counts of their buckets.
+ * <p>
+ * Required Parameters:
+ * <UL>
+ * <LI> metricsfile-File to write the metrics to
+ * </UL>
+ * <p>
+ * Optional Parameters:
+ * <UL>
+ * <LI> metricsformat-Format of the file, csv or json.  Default is csv.
+ * </UL>
+ */
+public class FileMetricsListener extends BaseConfigurable implements GeneratorListener {
+	private BufferedWriter writer = null;
+	private boolean json = false;
+	
+	public void start(GeneratorMetrics metrics) {
+		if(this.hasParameter("metricsformat", "csv")) {
+			json = false;
+		} else if(this.hasParameter("metricsformat", "json")) {
+			json = true;
+		} else if(this.hasParameter("metricsformat")) {
+			throw new ConfigurationException("Invalid metricsformat option: "
+					+this.getStringParameter("metricsformat"));
+		}
+		
+		try {
+			writer = new BufferedWriter(new FileWriter(this.getStringParameter("metricsfile")));
+			if(!json) {
+				writer.write("event,generator,elapsedseconds,nodes,edges,nodespersecond,edgespersecond,"
+						+"heapused,maxheapused,maxdegree,"
+						+this.csvHeader("burnsize")+","+this.csvHeader("burnedges")+","
+						+this.csvHeader("queuedepth")+"\n");
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		this.write("start", metrics);
+	}
+	
+	public void report(GeneratorMetrics metrics) {
+		this.write("report", metrics);
+	}
+	
+	public void finish(GeneratorMetrics metrics) {
+		this.write("finish", metrics);
+		
+		try {
+			writer.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private void write(String event, GeneratorMetrics metrics) {
+		StringBuilder line = new StringBuilder();
+		if(json) {
+			line.append("{\"event\":\""+event+"\"");
+			line.append(",\"generator\":\""+metrics.getGeneratorName()+"\"");
+			line.append(",\"elapsedseconds\":"+metrics.getElapsedSeconds());
+			line.append(",\"nodes\":"+metrics.getNumNodes());
+			line.append(",\"edges\":"+metrics.getNumEdges());
+			line.append(",\"nodespersecond\":"+metrics.getNodesPerSecond());
+			line.append(",\"edgespersecond\":"+metrics.getEdgesPerSecond());
+			line.append(",\"heapused\":"+metrics.getHeapUsed());
+			line.append(",\"maxheapused\":"+metrics.getMaxHeapUsed());
+			line.append(",\"maxdegree\":"+metrics.getMaxDegree());
+			line.append(",\"burnsize\":"+this.json(metrics.getBurnSize()));
+			line.append(",\"burnedges\":"+this.json(metrics.getBurnEdges()));
+			line.append(",\"queuedepth\":"+this.json(metrics.getQueueDepth()));
+			line.append("}\n");
+		} else {
+			line.append(event+","+metrics.getGeneratorName()+","+metrics.getElapsedSeconds()
+					+","+metrics.getNumNodes()+","+metrics.getNumEdges()
+					+","+metrics.getNodesPerSecond()+","+metrics.getEdgesPerSecond()
+					+","+metrics.getHeapUsed()+","+metrics.getMaxHeapUsed()+","+metrics.getMaxDegree()
+					+","+this.csv(metrics.getBurnSize())+","+this.csv(metrics.getBurnEdges())
+					+","+this.csv(metrics.getQueueDepth())+"\n");
+		}
+		
+		try {
+			writer.write(line.toString());
+			writer.flush();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private String csvHeader(String name) {
+		return name+"count,"+name+"mean,"+name+"p50,"+name+"p90,"+name+"p99,"+name+"max";
+	}
+	
+	private String csv(Histogram h) {
+		return h.getCount()+","+h.getMean()+","+h.getQuantileBound(.5)+","
+			+h.getQuantileBound(.9)+","+h.getQuantileBound(.99)+","+h.getMax();
+	}
+	
+	private String json(Histogram h) {
+		StringBuilder buckets = new StringBuilder();
+		for(int i=0; i<h.numBuckets(); i++) {
+			if(i!=0) {
+				buckets.append(",");
+			}
+			
+			buckets.append(h.getBucketCount(i));
+		}
+		
+		return "{\"count\":"+h.getCount()+",\"mean\":"+h.getMean()
+			+",\"p50\":"+h.getQuantileBound(.5)+",\"p90\":"+h.getQuantileBound(.9)
+			+",\"p99\":"+h.getQuantileBound(.99)+",\"max\":"+h.getMax()
+			+",\"buckets\":["+buckets+"]}";
+	}
+}
@@ -0,0 +1,50 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator.metrics;
+
+import linqs.gaia.configurable.Configurable;
+
+/**
+ * Interface for classes which receive the {@link GeneratorMetrics}
+ * of a generator while it generates a graph.
+ * The same metrics object is passed to every call and its values
+ * are updated right before each call.
+ */
+public interface GeneratorListener extends Configurable {
+	/**
+	 * Called once, when generation starts
+	 * 
+	 * @param metrics Metrics of the generator
+	 */
+	void start(GeneratorMetrics metrics);
+	
+	/**
+	 * Called periodically during generation
+	 * 
+	 * @param metrics Metrics of the generator
+	 */
+	void report(GeneratorMetrics metrics);
+	
+	/**
+	 * Called once, when generation is complete
+	 * 
+	 * @param metrics Metrics of the generator
+	 */
+	void finish(GeneratorMetrics metrics);
+}
@@ -0,0 +1,251 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator.metrics;
+
+/**
+ * Counters and histograms updated by a generator as it generates a graph,
+ * and periodically reported to a {@link GeneratorListener}.
+ * <p>
+ * Updating the metrics only increments fields.  The time is checked every
+ * 256 nodes and 1024 edges, and the listener is only called when at least
+ * the report interval has passed since the last report, so the overhead
+ * is small even when adding millions of nodes.  The metrics are not thread safe
+ * and should only be updated by the thread adding the nodes and edges.
+ */
+public class GeneratorMetrics {
+	private final String generatorname;
+	private final GeneratorListener listener;
+	private final long reportinterval;
+	
+	private long starttime = 0;
+	private long nextreport = 0;
+	private long lastreporttime = 0;
+	private long lastreportnodes = 0;
+	private long lastreportedges = 0;
+	
+	private long numnodes = 0;
+	private long numedges = 0;
+	private int maxdegree = 0;
+	private final Histogram burnsize = new Histogram();
+	private final Histogram burnedges = new Histogram();
+	private final Histogram queuedepth = new Histogram();
+	
+	// Values computed when reporting
+	private double elapsedseconds = 0;
+	private double nodespersecond = 0;
+	private double edgespersecond = 0;
+	private long heapused = 0;
+	private long maxheapused = 0;
+	
+	/**
+	 * Create metrics
+	 * 
+	 * @param generatorname Name of the generator, included in the reports
+	 * @param listener Listener to report to
+	 * @param reportinterval Minimum number of seconds between reports
+	 */
+	public GeneratorMetrics(String generatorname, GeneratorListener listener, double reportinterval) {
+		this.generatorname = generatorname;
+		this.listener = listener;
+		this.reportinterval = (long) (reportinterval*1e9);
+	}
+	
+	/**
+	 * Notify the listener that generation has started
+	 */
+	public void start() {
+		starttime = System.nanoTime();
+		lastreporttime = starttime;
+		nextreport = starttime + reportinterval;
+		this.updateReportValues(starttime);
+		listener.start(this);
+	}
+	
+	/**
+	 * Report the final values of the metrics and
+	 * notify the listener that generation has finished
+	 */
+	public void finish() {
+		this.updateReportValues(System.nanoTime());
+		listener.finish(this);
+	}
+	
+	/**
+	 * Report the metrics if at least the report interval has passed since the last report
+	 */
+	public void checkReport() {
+		long now = System.nanoTime();
+		if(now - nextreport >= 0) {
+			this.updateReportValues(now);
+			listener.report(this);
+			nextreport = now + reportinterval;
+		}
+	}
+	
+	private void updateReportValues(long now) {
+		double intervalseconds = (now - lastreporttime)/1e9;
+		elapsedseconds = (now - starttime)/1e9;
+		nodespersecond = intervalseconds > 0 ? (numnodes - lastreportnodes)/intervalseconds : 0;
+		edgespersecond = intervalseconds > 0 ? (numedges - lastreportedges)/intervalseconds : 0;
+		
+		Runtime runtime = Runtime.getRuntime();
+		heapused = runtime.totalMemory() - runtime.freeMemory();
+		maxheapused = Math.max(maxheapused, heapused);
+		
+		lastreporttime = now;
+		lastreportnodes = numnodes;
+		lastreportedges = numedges;
+	}
+	
+	/**
+	 * Count an added node
+	 */
+	public void addNode() {
+		numnodes++;
+		if((numnodes & 0xFF) == 0) {
+			this.checkReport();
+		}
+	}
+	
+	/**
+	 * Count an added edge
+	 */
+	public void addEdge() {
+		numedges++;
+		if((numedges & 0x3FF) == 0) {
+			this.checkReport();
+		}
+	}
+	
+	/**
+	 * Record the degree of a node
+	 * 
+	 * @param degree Degree
+	 */
+	public void recordDegree(int degree) {
+		if(degree > maxdegree) {
+			maxdegree = degree;
+		}
+	}
+	
+	/**
+	 * Record the size of a burn, or similar traversal, used to add the edges of a node
+	 * 
+	 * @param numvisited Number of nodes visited
+	 * @param numedges Number of edges created
+	 */
+	public void recordBurn(int numvisited, int numedges) {
+		burnsize.record(numvisited);
+		burnedges.record(numedges);
+	}
+	
+	/**
+	 * Record the number of items waiting to be processed
+	 * (e.g., nodes waiting to be burned or nodes scheduled to wake up)
+	 * 
+	 * @param depth Number of items
+	 */
+	public void recordQueueDepth(int depth) {
+		queuedepth.record(depth);
+	}
+	
+	/**
+	 * @return Name of the generator
+	 */
+	public String getGeneratorName() {
+		return generatorname;
+	}
+	
+	/**
+	 * @return Seconds from the start of generation to the last report
+	 */
+	public double getElapsedSeconds() {
+		return elapsedseconds;
+	}
+	
+	/**
+	 * @return Number of nodes added
+	 */
+	public long getNumNodes() {
+		return numnodes;
+	}
+	
+	/**
+	 * @return Number of edges added
+	 */
+	public long getNumEdges() {
+		return numedges;
+	}
+	
+	/**
+	 * @return Nodes added per second between the previous report and the last report
+	 */
+	public double getNodesPerSecond() {
+		return nodespersecond;
+	}
+	
+	/**
+	 * @return Edges added per second between the previous report and the last report
+	 */
+	public double getEdgesPerSecond() {
+		return edgespersecond;
+	}
+	
+	/**
+	 * @return Bytes of heap used at the last report
+	 */
+	public long getHeapUsed() {
+		return heapused;
+	}
+	
+	/**
+	 * @return Largest number of bytes of heap used at any report
+	 */
+	public long getMaxHeapUsed() {
+		return maxheapused;
+	}
+	
+	/**
+	 * @return Largest degree recorded
+	 */
+	public int getMaxDegree() {
+		return maxdegree;
+	}
+	
+	/**
+	 * @return Histogram of the number of nodes visited per burn
+	 */
+	public Histogram getBurnSize() {
+		return burnsize;
+	}
+	
+	/**
+	 * @return Histogram of the number of edges created per burn
+	 */
+	public Histogram getBurnEdges() {
+		return burnedges;
+	}
+	
+	/**
+	 * @return Histogram of queue depths
+	 */
+	public Histogram getQueueDepth() {
+		return queuedepth;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator.metrics;
+
+/**
+ * Histogram of non-negative ints using power of two buckets.
+ * Bucket 0 counts the value 0 and bucket i, for i>0, counts the values
+ * from 2^(i-1) to (2^i)-1.  Recording a value takes constant time
+ * and does not create any objects.
+ */
+public class Histogram {
+	private static final int NUM_BUCKETS = 32;
+	
+	private final long[] buckets = new long[NUM_BUCKETS];
+	private long count = 0;
+	private long sum = 0;
+	private int max = 0;
+	
+	/**
+	 * Record a value
+	 * 
+	 * @param value Non-negative value
+	 */
+	public void record(int value) {
+		if(value < 0) {
+			value = 0;
+		}
+		
+		buckets[32-Integer.numberOfLeadingZeros(value)]++;
+		count++;
+		sum += value;
+		if(value > max) {
+			max = value;
+		}
+	}
+	
+	/**
+	 * @return Number of values recorded
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return Mean of the values recorded, or 0 if none were recorded
+	 */
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+	
+	/**
+	 * @return Largest value recorded
+	 */
+	public int getMax() {
+		return max;
+	}
+	
+	/**
+	 * Upper bound on the given quantile of the values recorded
+	 * (i.e., the largest value of the bucket containing the quantile).
+	 * 
+	 * @param q Quantile, between 0 and 1
+	 * @return Upper bound on the quantile, or 0 if no values were recorded
+	 */
+	public int getQuantileBound(double q) {
+		long rank = (long) Math.ceil(q*count);
+		long seen = 0;
+		for(int i=0; i<NUM_BUCKETS; i++) {
+			seen += buckets[i];
+			if(seen >= rank && seen > 0) {
+				return Math.min(bucketMax(i), max);
+			}
+		}
+		
+		return max;
+	}
+	
+	/**
+	 * @return Number of buckets
+	 */
+	public int numBuckets() {
+		return NUM_BUCKETS;
+	}
+	
+	/**
+	 * @param i Bucket index
+	 * @return Number of values recorded in the bucket
+	 */
+	public long getBucketCount(int i) {
+		return buckets[i];
+	}
+	
+	/**
+	 * @param i Bucket index
+	 * @return Largest value counted in the bucket
+	 */
+	public static int bucketMax(int i) {
+		return i == 0 ? 0 : (int) ((1L << i) - 1);
+	}
+}
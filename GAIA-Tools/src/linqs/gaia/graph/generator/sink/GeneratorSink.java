@@ -0,0 +1,66 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator.sink;
+
+import linqs.gaia.configurable.Configurable;
+
+/**
+ * Interface for classes which receive the nodes and edges
+ * of a graph as they are generated, instead of having the generator
+ * store them in a {@link linqs.gaia.graph.Graph}.
+ * <p>
+ * Nodes and edges are identified by their numeric object ids.
+ * All nodes have the node schema id and all edges have the edge schema id
+ * given when the sink is opened.
+ * 
+ */
+public interface GeneratorSink extends Configurable {
+	/**
+	 * Prepare the sink to receive the nodes and edges of a graph
+	 * 
+	 * @param graphschemaid Schema id of the graph
+	 * @param graphobjid Object id of the graph
+	 * @param nodeschemaid Schema id of the nodes
+	 * @param edgeschemaid Schema id of the edges
+	 * @param isdirected If true, edges are directed.  Otherwise, they are undirected.
+	 */
+	void open(String graphschemaid, String graphobjid,
+			String nodeschemaid, String edgeschemaid, boolean isdirected);
+	
+	/**
+	 * Add node
+	 * 
+	 * @param nodeid Object id of node
+	 */
+	void addNode(int nodeid);
+	
+	/**
+	 * Add edge.  For undirected edges, the order of the nodes is arbitrary.
+	 * 
+	 * @param edgeid Object id of edge
+	 * @param sourceid Object id of source node
+	 * @param targetid Object id of target node
+	 */
+	void addEdge(int edgeid, int sourceid, int targetid);
+	
+	/**
+	 * Finish writing all nodes and edges and release any resources
+	 */
+	void close();
+}
@@ -0,0 +1,131 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator.sink;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import linqs.gaia.configurable.BaseConfigurable;
+import linqs.gaia.exception.InvalidStateException;
+
+/**
+ * Sink which writes the nodes and edges, as they are generated,
+ * in the file format used by {@link linqs.gaia.graph.io.SparseTabDelimIO}.
+ * The resulting files can be loaded using SparseTabDelimIO.
+ * No node or edge features are written.
+ * <p>
+ * Required Parameters:
+ * <UL>
+ * <LI> filedirectory-Directory to write the files to
+ * </UL>
+ * <p>
+ * Optional Parameters:
+ * <UL>
+ * <LI> fileprefix-Prefix of the files written.  Default is the graph object id.
+ * </UL>
+ */
+public class SparseTabDelimSink extends BaseConfigurable implements GeneratorSink {
+	private BufferedWriter nodewriter = null;
+	private BufferedWriter edgewriter = null;
+	private String nodeschemaid = null;
+	private boolean isdirected = true;
+	
+	public void open(String graphschemaid, String graphobjid,
+			String nodeschemaid, String edgeschemaid, boolean isdirected) {
+		this.nodeschemaid = nodeschemaid;
+		this.isdirected = isdirected;
+		
+		String filedirectory = this.getStringParameter("filedirectory");
+		String fileprefix = graphobjid;
+		if(this.hasParameter("fileprefix")) {
+			fileprefix = this.getStringParameter("fileprefix");
+		}
+		
+		File dir = new File(filedirectory);
+		if(!dir.exists() && !dir.mkdirs()) {
+			throw new InvalidStateException("Unable to create directory: "+filedirectory);
+		}
+		
+		String edgetype = isdirected ? "DIRECTED" : "UNDIRECTED";
+		try {
+			BufferedWriter graphwriter = new BufferedWriter(new FileWriter(
+					new File(dir, fileprefix+".GRAPH."+graphschemaid+".tab")));
+			graphwriter.write("GRAPH\t"+graphschemaid+"\n");
+			graphwriter.write("NO_FEATURES\n");
+			graphwriter.write(graphobjid+"\n");
+			graphwriter.close();
+			
+			nodewriter = new BufferedWriter(new FileWriter(
+					new File(dir, fileprefix+".NODE."+nodeschemaid+".tab")), 1<<16);
+			nodewriter.write("NODE\t"+nodeschemaid+"\n");
+			nodewriter.write("NO_FEATURES\n");
+			
+			edgewriter = new BufferedWriter(new FileWriter(
+					new File(dir, fileprefix+"."+edgetype+"."+edgeschemaid+".tab")), 1<<16);
+			edgewriter.write(edgetype+"\t"+edgeschemaid+"\n");
+			edgewriter.write("NO_FEATURES\n");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public void addNode(int nodeid) {
+		try {
+			nodewriter.write(Integer.toString(nodeid));
+			nodewriter.write('\n');
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public void addEdge(int edgeid, int sourceid, int targetid) {
+		try {
+			edgewriter.write(Integer.toString(edgeid));
+			edgewriter.write('\t');
+			edgewriter.write(nodeschemaid);
+			edgewriter.write(':');
+			edgewriter.write(Integer.toString(sourceid));
+			edgewriter.write(isdirected ? "\t|\t" : "\t");
+			edgewriter.write(nodeschemaid);
+			edgewriter.write(':');
+			edgewriter.write(Integer.toString(targetid));
+			edgewriter.write('\n');
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public void close() {
+		try {
+			if(nodewriter != null) {
+				nodewriter.close();
+				nodewriter = null;
+			}
+			
+			if(edgewriter != null) {
+				edgewriter.close();
+				edgewriter = null;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import linqs.gaia.graph.generator.GraphStatistics;
+
+/**
+ * Test {@link GraphStatistics} on graphs whose statistics are known
+ */
+public class GraphStatisticsTestCase extends TestCase {
+	public GraphStatisticsTestCase() {
+		
+	}
+	
+	protected void setUp() {
+		
+	}
+	
+	protected void tearDown() {
+		
+	}
+	
+	public void testClique() {
+		int n = 20;
+		GraphStatistics stats = new GraphStatistics(n, true, n*n);
+		for(int i=0; i<n; i++) {
+			for(int j=0; j<n; j++) {
+				// Both directions and a self loop for every node
+				stats.addEdge(i, j);
+			}
+		}
+		
+		stats.compute(3, 1000, 10, 0);
+		
+		assertEquals(n*(n-1)/2, stats.getNumNeighborPairs());
+		assertEquals(n, stats.getNumSelfLoops());
+		assertEquals(n, stats.getDegreeCounts().length);
+		assertEquals(n, stats.getDegreeCounts()[n-1]);
+		assertEquals(n, stats.getOutDegreeCounts()[n]);
+		assertEquals(1.0, stats.getClusteringCoefficient(), 0);
+		assertEquals(1, stats.getSampledDiameter());
+		assertEquals(0.9, stats.getEffectiveDiameter(), 1e-9);
+	}
+	
+	public void testPath() {
+		int n = 101;
+		GraphStatistics stats = new GraphStatistics(n, false, n);
+		for(int i=0; i<n-1; i++) {
+			stats.addEdge(i+1, i);
+		}
+		
+		// Every node is used as a source so all distances are found
+		stats.compute(2, 1000, 10000, 0);
+		
+		long[] degrees = stats.getDegreeCounts();
+		assertEquals(3, degrees.length);
+		assertEquals(2, degrees[1]);
+		assertEquals(n-2, degrees[2]);
+		assertNull(stats.getOutDegreeCounts());
+		assertEquals(0.0, stats.getClusteringCoefficient(), 0);
+		assertEquals(n-1, stats.getSampledDiameter());
+	}
+	
+	public void testThreads() {
+		GraphStatistics one = this.createRandomGraph();
+		one.compute(1, 5000, 50, 7);
+		GraphStatistics four = this.createRandomGraph();
+		four.compute(4, 5000, 50, 7);
+		
+		assertTrue(Arrays.equals(one.getDegreeCounts(), four.getDegreeCounts()));
+		assertTrue(Arrays.equals(one.getDistanceCounts(), four.getDistanceCounts()));
+		assertEquals(one.getClusteringCoefficient(), four.getClusteringCoefficient(), 0);
+	}
+	
+	private GraphStatistics createRandomGraph() {
+		int n = 5000;
+		Random rand = new Random(0);
+		GraphStatistics stats = new GraphStatistics(n, false, 4*n);
+		for(int i=0; i<4*n; i++) {
+			stats.addEdge(rand.nextInt(n), rand.nextInt(n));
+		}
+		
+		return stats;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+* This file is part of the GAIA-Tools software.
+* Copyright 2011 University of Maryland
+* 
+* GAIA-Tools is free software: you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+* 
+* GAIA-Tools is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+* 
+* You should have received a copy of the GNU General Public License
+* along with GAIA-Tools.  If not, see <http://www.gnu.org/licenses/>.
+* 
+*/
+package linqs.gaia.graph.generator.test;
+
+import junit.framework.TestCase;
+import linqs.gaia.graph.generator.SleepTimeSampler;
+import cern.jet.random.engine.MersenneTwister;
+import cern.jet.stat.Probability;
+
+/**
+ * Test that the sleep times drawn using the tables of {@link SleepTimeSampler}
+ * have the same distribution as those drawn using the rejection method
+ */
+public class SleepTimeSamplerTestCase extends TestCase {
+	private static final double ALPHA = 0.84;
+	private static final double BETA = 0.002;
+	private static final int NUMSAMPLES = 200000;
+	
+	// Upper bounds of the histogram bins, with a last bin for all larger sleep times
+	private static final int[] BINS = new int[]{1, 2, 3, 4, 5, 6, 8, 10, 15, 20, 30, 50,
+		75, 100, 150, 200, 300, 500, 750, 1000, 1024, 1100, 1500, 2000, 5000,
+		10000, 100000, 1000000, 100000000};
+	
+	public SleepTimeSamplerTestCase() {
+		
+	}
+	
+	protected void setUp() {
+		
+	}
+
+	protected void tearDown() {
+		
+	}
+	
+	public void testSmallDegree() {
+		this.checkDistribution(1);
+	}
+	
+	public void testLargeDegree() {
+		this.checkDistribution(200);
+	}
+	
+	public void testRejectionDegree() {
+		// Degree too large for a table, which uses the rejection method
+		this.checkDistribution(SleepTimeSampler.DEFAULT_MAX_TABLE_DEGREE+10);
+	}
+	
+	/**
+	 * Compare the histograms of sleep times, from both methods, for the given degree
+	 * using the chi-square test for two samples of the same size
+	 * 
+	 * @param degree Degree of node
+	 */
+	private void checkDistribution(int degree) {
+		SleepTimeSampler tablesampler = new SleepTimeSampler(new MersenneTwister(1), ALPHA, BETA);
+		SleepTimeSampler rejectionsampler = new SleepTimeSampler(new MersenneTwister(2), ALPHA, BETA);
+		
+		long[] tablecounts = new long[BINS.length+1];
+		long[] rejectioncounts = new long[BINS.length+1];
+		for(int i=0; i<NUMSAMPLES; i++) {
+			int tablesample = tablesampler.sample(degree);
+			assertTrue(tablesample >= 1);
+			tablecounts[bin(tablesample)]++;
+			
+			int rejectionsample = rejectionsampler.sampleRejection(BETA*degree);
+			rejectioncounts[bin(rejectionsample)]++;
+		}
+		
+		double chisquare = 0;
+		int dof = -1;
+		for(int b=0; b<tablecounts.length; b++) {
+			long total = tablecounts[b] + rejectioncounts[b];
+			if(total == 0) {
+				continue;
+			}
+			
+			double diff = tablecounts[b] - rejectioncounts[b];
+			chisquare += diff*diff/total;
+			dof++;
+		}
+		
+		double pvalue = Probability.chiSquareComplemented(dof, chisquare);
+		assertTrue("Distributions differ for degree "+degree+": chi-square="+chisquare
+				+" with "+dof+" degrees of freedom, p="+pvalue, pvalue > 0.001);
+	}
+	
+	private static int bin(int sleeptime) {
+		for(int b=0; b<BINS.length; b++) {
+			if(sleeptime <= BINS[b]) {
+				return b;
+			}
+		}
+		
+		return BINS.length;
+	}
+	
+	public static void main(String[] args) {
+		junit.textui.TestRunner.run(SleepTimeSamplerTestCase.class);
+	}
+}